@@ -0,0 +1,137 @@
+package demo.benchmarks;
+
+import demo.HelloVerticle;
+import demo.HttpServerVerticle;
+import demo.common.HelloBatch;
+import demo.common.HelloBatchCodec;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Verticle;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Round trip of {@link HelloBatch} requests in both deployment modes of eventbux-vertx, deployed like its
+ * {@code MainVerticle} does.
+ * <p>
+ * Batches are sent from the event loop of the {@link HttpServerVerticle} to the address its hello batcher uses: the
+ * co-located local consumer in {@code EVENT_LOOP} mode, the {@link HelloVerticle} workers on
+ * {@code hello.named.batch.addr} in {@code WORKER} mode. The batching window is not part of the result, the benchmark
+ * thread only waits for each chain of {@link #CHAIN} round trips.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventBusBatchBenchmark {
+
+    private static final int CHAIN = 100;
+
+    @Param({"EVENT_LOOP", "WORKER"})
+    public String mode;
+
+    @Param({"1", "64"})
+    public int batchSize;
+
+    private Vertx vertx;
+
+    private Server server;
+
+    private HelloBatch batch;
+
+    @Setup
+    public void setup() throws Exception {
+
+        vertx = Vertx.vertx();
+        vertx.eventBus().registerDefaultCodec(HelloBatch.class, new HelloBatchCodec());
+
+        if ("WORKER".equals(mode)) {
+            deploy(HelloVerticle::new, new DeploymentOptions().setInstances(4).setWorker(true));
+        }
+
+        server = new Server();
+        deploy(() -> server, new DeploymentOptions().setConfig(new JsonObject().put("mode", mode).put("port", 0)));
+
+        var names = new ArrayList<String>(batchSize);
+        for (var i = 0; i < batchSize; i++) {
+            names.add("bench" + i);
+        }
+        batch = new HelloBatch(names);
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHAIN)
+    public Object request() throws Exception {
+
+        var done = new CompletableFuture<Object>();
+        server.context().runOnContext(v -> next(server.batchAddress(), CHAIN, done));
+        return done.get(30, TimeUnit.SECONDS);
+    }
+
+    private void next(String address, int remaining, CompletableFuture<Object> done) {
+
+        vertx.eventBus().<HelloBatch>request(address, batch, reply -> {
+
+            if (reply.failed()) {
+                done.completeExceptionally(reply.cause());
+            } else if (remaining == 1) {
+                done.complete(reply.result().body());
+            } else {
+                next(address, remaining - 1, done);
+            }
+        });
+    }
+
+    private void deploy(Supplier<Verticle> verticle, DeploymentOptions options) throws Exception {
+
+        var deployed = new CompletableFuture<String>();
+        vertx.deployVerticle(verticle, options, ar -> {
+            if (ar.succeeded()) {
+                deployed.complete(ar.result());
+            } else {
+                deployed.completeExceptionally(ar.cause());
+            }
+        });
+        deployed.get(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * The HTTP server of the module, exposing the event loop its hello batcher sends from.
+     */
+    private static class Server extends HttpServerVerticle {
+
+        Context context() {
+            return context;
+        }
+
+        @Override
+        protected String batchAddress() {
+            return super.batchAddress();
+        }
+    }
+}
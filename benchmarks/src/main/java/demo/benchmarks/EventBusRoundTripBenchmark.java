@@ -0,0 +1,94 @@
+package demo.benchmarks;
+
+import demo.HelloVerticle;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip of {@code hello.named.addr} requests to the {@link HelloVerticle} of eventbux-vertx, deployed on an event
+ * loop or as a worker.
+ * <p>
+ * Requests are sent one after the other from an event loop like an HTTP handler would, the benchmark thread only waits
+ * for each chain of {@link #CHAIN} round trips, so the handoff to the benchmark thread is not part of the result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventBusRoundTripBenchmark {
+
+    private static final int CHAIN = 100;
+
+    @Param({"EVENT_LOOP", "WORKER"})
+    public String mode;
+
+    private Vertx vertx;
+
+    private Context requester;
+
+    @Setup
+    public void setup() throws Exception {
+
+        vertx = Vertx.vertx();
+
+        var deployed = new CompletableFuture<String>();
+        vertx.deployVerticle(HelloVerticle.class.getName(), new DeploymentOptions().setWorker("WORKER".equals(mode)), ar -> {
+            if (ar.succeeded()) {
+                deployed.complete(ar.result());
+            } else {
+                deployed.completeExceptionally(ar.cause());
+            }
+        });
+        deployed.get(30, TimeUnit.SECONDS);
+
+        // an event loop context of its own, the consumer does not run on it in either mode
+        requester = vertx.getOrCreateContext();
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHAIN)
+    public Object request() throws Exception {
+
+        var done = new CompletableFuture<Object>();
+        requester.runOnContext(v -> next(CHAIN, done));
+        return done.get(30, TimeUnit.SECONDS);
+    }
+
+    private void next(int remaining, CompletableFuture<Object> done) {
+
+        vertx.eventBus().request("hello.named.addr", "bench", reply -> {
+
+            if (reply.failed()) {
+                done.completeExceptionally(reply.cause());
+            } else if (remaining == 1) {
+                done.complete(reply.result().body());
+            } else {
+                next(remaining - 1, done);
+            }
+        });
+    }
+}
@@ -0,0 +1,134 @@
+package demo.benchmarks;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * In-memory request and response to drive a {@code Router} without any I/O.
+ * <p>
+ * Both are dynamic proxies which answer the few calls routing and simple handlers make: method, path, headers and
+ * params of the request, status code and end of the response. Fluent methods return the proxy itself, all other
+ * methods return {@code null}, {@code false} or {@code 0}. The same exchange is reused after {@link #reset()}.
+ */
+final class FakeExchange {
+
+    private final MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+
+    private final MultiMap params = MultiMap.caseInsensitiveMultiMap();
+
+    private final HttpServerRequest request;
+
+    private final HttpServerResponse response;
+
+    private int statusCode;
+
+    private boolean ended;
+
+    private Object body;
+
+    FakeExchange(HttpMethod method, String path) {
+        this.response = (HttpServerResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServerResponse.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "setStatusCode":
+                            statusCode = (Integer) args[0];
+                            return proxy;
+                        case "getStatusCode":
+                            return statusCode;
+                        case "end":
+                            ended = true;
+                            body = args == null || args.length == 0 ? null : args[0];
+                            return null;
+                        case "ended":
+                            return ended;
+                        default:
+                            return defaultValue(proxy, m.getName(), args, m.getReturnType());
+                    }
+                });
+        this.request = (HttpServerRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServerRequest.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "method":
+                            return method;
+                        case "rawMethod":
+                            return method.name();
+                        case "path":
+                        case "uri":
+                            return path;
+                        case "headers":
+                            return headers;
+                        case "getHeader":
+                            return headers.get(args[0].toString());
+                        case "params":
+                            return params;
+                        case "getParam":
+                            return params.get((String) args[0]);
+                        case "response":
+                            return response;
+                        default:
+                            return defaultValue(proxy, m.getName(), args, m.getReturnType());
+                    }
+                });
+        reset();
+    }
+
+    HttpServerRequest request() {
+        return request;
+    }
+
+    int statusCode() {
+        return statusCode;
+    }
+
+    boolean ended() {
+        return ended;
+    }
+
+    Object body() {
+        return body;
+    }
+
+    /**
+     * Prepares the exchange for the next dispatch, the router adds the path params of every match to the request.
+     */
+    void reset() {
+        params.clear();
+        statusCode = 200;
+        ended = false;
+        body = null;
+    }
+
+    private static Object defaultValue(Object proxy, String name, Object[] args, Class<?> type) {
+
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "FakeExchange@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+
+        if (type.isInstance(proxy)) {
+            return proxy;
+        }
+
+        if (type == boolean.class) {
+            return false;
+        }
+
+        if (type == int.class) {
+            return 0;
+        }
+
+        if (type == long.class) {
+            return 0L;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,153 @@
+package demo.benchmarks;
+
+import demo.CachingJWTAuth;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.auth.jwt.JWTAuthOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of an RS256 access token by {@link JWTAuth}, configured like jwt-service-vertx but with a JSON Web Key
+ * Set generated locally instead of fetched from Keycloak.
+ * <p>
+ * With {@code cached} the token is validated through {@link CachingJWTAuth} like in jwt-service-vertx, so only the
+ * first validation checks the signature. Without it every validation checks the signature, like a cache miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthBenchmark {
+
+    private static final String ISSUER = "http://localhost:8080/auth/realms/vertx";
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private static final String PERMISSIONS_CLAIM_KEY = "realm_access/roles";
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private Vertx vertx;
+
+    private JWTAuth jwtAuth;
+
+    private JsonObject credentials;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+
+        var generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        var keyPair = generator.generateKeyPair();
+
+        var jwtAuthOptions = new JWTAuthOptions();
+        jwtAuthOptions.setJwks(List.of(jwk((RSAPublicKey) keyPair.getPublic())));
+        jwtAuthOptions.setPermissionsClaimKey(PERMISSIONS_CLAIM_KEY);
+
+        vertx = Vertx.vertx();
+        jwtAuth = JWTAuth.create(vertx, jwtAuthOptions);
+        if (cached) {
+            jwtAuth = CachingJWTAuth.create(jwtAuth, List.of("user", "admin"), PERMISSIONS_CLAIM_KEY, 10_000);
+        }
+        credentials = new JsonObject().put("jwt", token(keyPair));
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Benchmark
+    public User authenticate() {
+
+        // JWTAuth verifies the signature and completes the handler before returning, CachingJWTAuth as well
+        var user = new User[1];
+        jwtAuth.authenticate(credentials, ar -> {
+            if (ar.failed()) {
+                throw new IllegalStateException("Token was rejected", ar.cause());
+            }
+            user[0] = ar.result();
+        });
+
+        if (user[0] == null) {
+            throw new IllegalStateException("JWTAuth completed asynchronously, the benchmark would not measure it");
+        }
+
+        return user[0];
+    }
+
+    private static JsonObject jwk(RSAPublicKey publicKey) {
+        return new JsonObject()
+                .put("kty", "RSA")
+                .put("kid", "bench")
+                .put("use", "sig")
+                .put("alg", "RS256")
+                .put("n", base64url(publicKey.getModulus()))
+                .put("e", base64url(publicKey.getPublicExponent()));
+    }
+
+    private static String token(KeyPair keyPair) throws GeneralSecurityException {
+
+        var now = System.currentTimeMillis() / 1000;
+        var header = new JsonObject().put("alg", "RS256").put("typ", "JWT").put("kid", "bench");
+        var payload = new JsonObject()
+                .put("iss", ISSUER)
+                .put("sub", "bench-user")
+                .put("preferred_username", "bench")
+                .put("iat", now)
+                .put("exp", now + TimeUnit.DAYS.toSeconds(1))
+                .put("realm_access", new JsonObject().put("roles", new JsonArray().add("user").add("admin")));
+
+        var signingInput = base64url(header.encode()) + "." + base64url(payload.encode());
+
+        var signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+
+        return signingInput + "." + BASE64URL.encodeToString(signature.sign());
+    }
+
+    private static String base64url(String value) {
+        return BASE64URL.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String base64url(BigInteger value) {
+
+        // JWK integers are unsigned big-endian, without the sign byte of BigInteger
+        var bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+
+        return BASE64URL.encodeToString(bytes);
+    }
+}
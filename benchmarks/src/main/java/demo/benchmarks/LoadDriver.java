@@ -0,0 +1,135 @@
+package demo.benchmarks;
+
+import demo.metrics.LatencyHistogram;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop HTTP load against a running module, reporting throughput and latency percentiles.
+ * <p>
+ * {@code concurrency} keep-alive connections each send the next request as soon as the previous response was read.
+ * A quarter of the requests warm up the JIT and the connections first and are not reported, unless there are fewer than
+ * four requests.
+ * <p>
+ * java -cp target/benchmarks.jar demo.benchmarks.LoadDriver http://localhost:7000/api/v1/hello/bench [concurrency] [requests]
+ */
+public class LoadDriver {
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length == 0) {
+            usage();
+        }
+
+        var uri = URI.create(args[0]);
+        var concurrency = args.length > 1 ? positive(args[1]) : 64;
+        var requests = args.length > 2 ? positive(args[2]) : 200_000;
+
+        var vertx = Vertx.vertx();
+        var client = WebClient.create(vertx, new WebClientOptions()
+                .setDefaultHost(uri.getHost())
+                .setDefaultPort(uri.getPort() == -1 ? 80 : uri.getPort())
+                .setMaxPoolSize(concurrency)
+                .setKeepAlive(true));
+
+        var path = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+
+        Result result;
+        try {
+            if (requests >= 4) {
+                drive(client, path, concurrency, requests / 4);
+            }
+            result = drive(client, path, concurrency, requests);
+        } finally {
+            vertx.close();
+        }
+
+        var latencies = result.histogram.snapshot();
+        System.out.printf("%s requests=%d errors=%d concurrency=%d throughput=%.0f req/s p50=%dus p99=%dus p999=%dus max=%dus%n",
+                uri, requests, result.errors.get(), concurrency, requests / (result.elapsedNanos / 1e9),
+                latencies.valueAtPercentile(50), latencies.valueAtPercentile(99), latencies.valueAtPercentile(99.9),
+                latencies.valueAtPercentile(100));
+    }
+
+    private static int positive(String arg) {
+
+        try {
+            var value = Integer.parseInt(arg);
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+
+        System.err.println("Not a positive number: " + arg);
+        usage();
+        return 0;
+    }
+
+    private static void usage() {
+        System.err.println("usage: LoadDriver <url> [concurrency] [requests]");
+        System.exit(1);
+    }
+
+    private static Result drive(WebClient client, String path, int concurrency, int requests) throws Exception {
+
+        var result = new Result();
+        var issued = new AtomicInteger();
+        var completed = new AtomicInteger();
+        var done = new CompletableFuture<Void>();
+
+        var start = System.nanoTime();
+        for (var i = 0; i < concurrency; i++) {
+            next(client, path, requests, result, issued, completed, done);
+        }
+        done.get(30, TimeUnit.MINUTES);
+        result.elapsedNanos = System.nanoTime() - start;
+
+        return result;
+    }
+
+    private static void next(WebClient client, String path, int requests, Result result, AtomicInteger issued,
+                             AtomicInteger completed, CompletableFuture<Void> done) {
+
+        if (issued.getAndIncrement() >= requests) {
+            return;
+        }
+
+        var sent = System.nanoTime();
+        client.request(HttpMethod.GET, path).send(ar -> {
+
+            if (ar.failed()) {
+                done.completeExceptionally(ar.cause());
+                return;
+            }
+
+            result.histogram.recordNanosSince(sent);
+            if (ar.result().statusCode() >= 400) {
+                result.errors.incrementAndGet();
+            }
+
+            if (completed.incrementAndGet() == requests) {
+                done.complete(null);
+            } else {
+                next(client, path, requests, result, issued, completed, done);
+            }
+        });
+    }
+
+    private static class Result {
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private final AtomicInteger errors = new AtomicInteger();
+
+        private long elapsedNanos;
+    }
+}
@@ -0,0 +1,86 @@
+package demo.benchmarks;
+
+import demo.HelloRoutes;
+import demo.common.CoarseClock;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch of a request through a {@link Router} with the {@link HelloRoutes} of router-vertx, without any I/O.
+ * <p>
+ * {@code extraRoutes} adds unrelated routes in front of the hello routes, to show how dispatch scales with the number
+ * of routes which have to be matched first.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouterDispatchBenchmark {
+
+    @Param({"/api/v1/hello", "/api/v1/hello/bench"})
+    public String path;
+
+    @Param({"0", "20"})
+    public int extraRoutes;
+
+    private Vertx vertx;
+
+    private Router router;
+
+    private FakeExchange exchange;
+
+    @Setup
+    public void setup() {
+
+        vertx = Vertx.vertx();
+        router = Router.router(vertx);
+
+        for (var i = 0; i < extraRoutes; i++) {
+            router.get("/api/v1/other" + i + "/:id").handler(RouterDispatchBenchmark::onOther);
+        }
+
+        HelloRoutes.install(router, CoarseClock.get(vertx));
+
+        exchange = new FakeExchange(HttpMethod.GET, path);
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Benchmark
+    public Object dispatch() {
+
+        // cheaper than a per-invocation setup, which JMH advises against at this scale
+        exchange.reset();
+        router.handle(exchange.request());
+        if (!exchange.ended()) {
+            throw new IllegalStateException("No route handled " + path);
+        }
+
+        return exchange.body();
+    }
+
+    private static void onOther(RoutingContext ctx) {
+        ctx.response().end(ctx.pathParam("id"));
+    }
+}
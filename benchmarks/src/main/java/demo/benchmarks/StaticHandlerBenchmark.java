@@ -0,0 +1,110 @@
+package demo.benchmarks;
+
+import demo.StaticRoutes;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serving a file with the {@link StaticRoutes} of static-handler-vertx over a keep-alive loopback connection.
+ * <p>
+ * Files of up to 1 MiB are served from memory, the 4 MiB file is streamed from disk. The files are generated below
+ * {@code target/bench-static}, the web root has to be relative.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StaticHandlerBenchmark {
+
+    private static final String WEB_ROOT = "target/bench-static";
+
+    @Param({"1024", "65536", "1048576", "4194304"})
+    public int size;
+
+    private Vertx vertx;
+
+    private HttpServer server;
+
+    private WebClient client;
+
+    private String uri;
+
+    @Setup
+    public void setup() throws Exception {
+
+        var content = new byte[size];
+        new Random(42).nextBytes(content);
+        Files.createDirectories(Paths.get(WEB_ROOT));
+        Files.write(Paths.get(WEB_ROOT, "file-" + size + ".bin"), content);
+        uri = "/file-" + size + ".bin";
+
+        vertx = Vertx.vertx();
+
+        var router = Router.router(vertx);
+
+        var listening = new CompletableFuture<HttpServer>();
+        StaticRoutes.install(vertx, router, WEB_ROOT)
+                .<HttpServer>compose(v -> Future.future(listen -> vertx.createHttpServer().requestHandler(router).listen(0, listen)))
+                .onComplete(ar -> {
+                    if (ar.succeeded()) {
+                        listening.complete(ar.result());
+                    } else {
+                        listening.completeExceptionally(ar.cause());
+                    }
+                });
+        server = listening.get(30, TimeUnit.SECONDS);
+
+        client = WebClient.create(vertx, new WebClientOptions()
+                .setDefaultPort(server.actualPort())
+                .setMaxPoolSize(1)
+                .setKeepAlive(true));
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Benchmark
+    public Buffer get() throws Exception {
+
+        var body = new CompletableFuture<Buffer>();
+        client.request(HttpMethod.GET, uri).send(ar -> {
+            if (ar.failed()) {
+                body.completeExceptionally(ar.cause());
+            } else if (ar.result().statusCode() != 200) {
+                body.completeExceptionally(new IllegalStateException("Unexpected status " + ar.result().statusCode()));
+            } else {
+                body.complete(ar.result().body());
+            }
+        });
+
+        return body.get(30, TimeUnit.SECONDS);
+    }
+}
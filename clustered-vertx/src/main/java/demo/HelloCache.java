@@ -0,0 +1,175 @@
+package demo;
+
+import demo.common.CoarseClock;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.AsyncMap;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Two tier cache for greetings by name.
+ * <p>
+ * The near tier is a bounded LRU map of this node which answers without any hop. Misses go to the cluster wide
+ * {@code hello.greetings} map, which is distributed by the cluster manager, and only then to the loader. Concurrent
+ * misses for the same name share a single load. Entries expire after {@code ttlMillis} in the cluster map and after
+ * {@code nearTtlMillis} in the near tier, so greetings are at most {@code ttlMillis + nearTtlMillis} old.
+ * <p>
+ * Whenever a node stores a new greeting, it publishes the name on {@link #INVALIDATE_ADDRESS} and all other nodes drop
+ * their near copy. Must be used from a single event loop.
+ */
+class HelloCache {
+
+    static final String INVALIDATE_ADDRESS = "hello.cache.invalidate";
+
+    private static final Logger LOG = LoggerFactory.getLogger(HelloCache.class);
+
+    private static final String CLUSTER_MAP = "hello.greetings";
+
+    private static final String ORIGIN = "origin";
+
+    private final Vertx vertx;
+
+    private final String nodeId;
+
+    private final CoarseClock clock;
+
+    private final long ttlMillis;
+
+    private final long nearTtlMillis;
+
+    private final Map<String, CacheEntry> near;
+
+    private final Map<String, Future<String>> loading = new HashMap<>();
+
+    private final DeliveryOptions invalidateOptions;
+
+    private AsyncMap<String, String> clusterMap;
+
+    HelloCache(Vertx vertx, String nodeId, int maxEntries, long ttlMillis, long nearTtlMillis) {
+        this.vertx = vertx;
+        this.nodeId = nodeId;
+        this.clock = CoarseClock.get(vertx);
+        this.ttlMillis = ttlMillis;
+        this.nearTtlMillis = nearTtlMillis;
+        this.invalidateOptions = new DeliveryOptions().addHeader(ORIGIN, nodeId);
+        this.near = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    Future<Void> start() {
+
+        vertx.eventBus().<String>consumer(INVALIDATE_ADDRESS, msg -> {
+            if (!nodeId.equals(msg.headers().get(ORIGIN))) {
+                near.remove(msg.body());
+            }
+        });
+
+        var promise = Promise.<Void>promise();
+        vertx.sharedData().<String, String>getAsyncMap(CLUSTER_MAP, ar -> {
+            if (ar.succeeded()) {
+                clusterMap = ar.result();
+            }
+            promise.handle(ar.mapEmpty());
+        });
+
+        return promise.future();
+    }
+
+    Future<String> get(String name, Function<String, Future<String>> loader) {
+
+        var now = clock.millis();
+        var entry = near.get(name);
+        if (entry != null) {
+            if (entry.expiresAt > now) {
+                return Future.succeededFuture(entry.greeting);
+            }
+            near.remove(name);
+        }
+
+        var pending = loading.get(name);
+        if (pending != null) {
+            return pending;
+        }
+
+        var promise = Promise.<String>promise();
+        loading.put(name, promise.future());
+
+        clusterMap.get(name, ar -> {
+
+            if (ar.succeeded() && ar.result() != null) {
+                putNear(name, ar.result());
+                complete(name, promise, ar.result());
+                return;
+            }
+
+            if (ar.failed()) {
+                LOG.warn("Could not read cached greeting, loading it instead", ar.cause());
+            }
+
+            Future<String> load;
+            try {
+                load = loader.apply(name);
+            } catch (RuntimeException e) {
+                // a throwing loader must not leave the name loading forever
+                fail(name, promise, e);
+                return;
+            }
+
+            load.onComplete(loaded -> {
+
+                if (loaded.failed()) {
+                    fail(name, promise, loaded.cause());
+                    return;
+                }
+
+                putNear(name, loaded.result());
+                clusterMap.put(name, loaded.result(), ttlMillis, put -> {
+                    if (put.succeeded()) {
+                        vertx.eventBus().publish(INVALIDATE_ADDRESS, name, invalidateOptions);
+                    }
+                });
+                complete(name, promise, loaded.result());
+            });
+        });
+
+        return promise.future();
+    }
+
+    private void putNear(String name, String greeting) {
+        near.put(name, new CacheEntry(greeting, clock.millis() + nearTtlMillis));
+    }
+
+    private void complete(String name, Promise<String> promise, String greeting) {
+        loading.remove(name);
+        promise.complete(greeting);
+    }
+
+    private void fail(String name, Promise<String> promise, Throwable cause) {
+        loading.remove(name);
+        promise.fail(cause);
+    }
+
+    private static class CacheEntry {
+
+        private final String greeting;
+
+        private final long expiresAt;
+
+        CacheEntry(String greeting, long expiresAt) {
+            this.greeting = greeting;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
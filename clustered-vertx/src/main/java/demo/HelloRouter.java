@@ -0,0 +1,178 @@
+package demo;
+
+import demo.common.HelloBatch;
+import demo.common.HelloBatcher;
+import demo.metrics.Metrics;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.AsyncMap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Picks the node which answers a {@link HelloBatch}.
+ * <p>
+ * In {@link Mode#ROUND_ROBIN} mode batches go to the shared {@link HelloBatcher#BATCH_ADDRESS} and the clustered event
+ * bus spreads them over all nodes, so most of them cross the network. In {@link Mode#LOCAL_FIRST} mode batches go to
+ * the consumer of this node, which is never serialized. Only while more than {@code spillThreshold} names are pending
+ * locally, batches spill to the remote node with the least load.
+ * <p>
+ * Every node publishes its local load to a cluster wide map every {@code hintIntervalMillis}, entries of nodes which
+ * stopped publishing expire. The hints of the other nodes are read back at the same interval, a remote node is rated by
+ * its hint plus the names this node has pending there. Must be used from a single event loop.
+ */
+class HelloRouter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HelloRouter.class);
+
+    private static final String LOAD_MAP = "hello.load";
+
+    // node addresses are recorded as local or remote, so the cost of a hop shows without a series per node
+    private static final String LOCAL_METRICS_ADDRESS = HelloBatcher.BATCH_ADDRESS + ".local";
+
+    private static final String REMOTE_METRICS_ADDRESS = HelloBatcher.BATCH_ADDRESS + ".remote";
+
+    enum Mode {
+
+        ROUND_ROBIN,
+
+        LOCAL_FIRST
+    }
+
+    private final Vertx vertx;
+
+    private final String nodeId;
+
+    private final Mode mode;
+
+    private final int spillThreshold;
+
+    private final long hintIntervalMillis;
+
+    private final DeliveryOptions remoteOptions;
+
+    private final DeliveryOptions localOptions;
+
+    private final Metrics metrics;
+
+    /**
+     * Names pending per node, including this one.
+     */
+    private final Map<String, Integer> pending = new HashMap<>();
+
+    private Map<String, Integer> remoteHints = Map.of();
+
+    private AsyncMap<String, Integer> loadMap;
+
+    HelloRouter(Vertx vertx, String nodeId, Mode mode, int spillThreshold, long hintIntervalMillis, DeliveryOptions options) {
+        this.vertx = vertx;
+        this.nodeId = nodeId;
+        this.mode = mode;
+        this.spillThreshold = spillThreshold;
+        this.hintIntervalMillis = hintIntervalMillis;
+        this.remoteOptions = options;
+        this.localOptions = new DeliveryOptions(options).setLocalOnly(true);
+        this.metrics = Metrics.get(vertx);
+    }
+
+    /**
+     * The address the hello consumer of the given node listens on in addition to the shared one.
+     */
+    static String nodeAddress(String nodeId) {
+        return HelloBatcher.BATCH_ADDRESS + "." + nodeId;
+    }
+
+    Future<Void> start() {
+
+        if (mode == Mode.ROUND_ROBIN) {
+            return Future.succeededFuture();
+        }
+
+        var promise = Promise.<Void>promise();
+        vertx.sharedData().<String, Integer>getAsyncMap(LOAD_MAP, ar -> {
+
+            if (ar.succeeded()) {
+                loadMap = ar.result();
+                vertx.setPeriodic(hintIntervalMillis, id -> exchangeHints());
+            }
+            promise.handle(ar.mapEmpty());
+        });
+
+        return promise.future();
+    }
+
+    Future<HelloBatch> request(HelloBatch batch) {
+
+        if (mode == Mode.ROUND_ROBIN) {
+            return send(HelloBatcher.BATCH_ADDRESS, HelloBatcher.BATCH_ADDRESS, remoteOptions, batch);
+        }
+
+        var target = target();
+        var size = batch.size();
+        pending.merge(target, size, Integer::sum);
+
+        var reply = target.equals(nodeId)
+                ? send(nodeAddress(target), LOCAL_METRICS_ADDRESS, localOptions, batch)
+                : send(nodeAddress(target), REMOTE_METRICS_ADDRESS, remoteOptions, batch);
+        return reply.onComplete(ar -> pending.merge(target, -size, Integer::sum));
+    }
+
+    private String target() {
+
+        if (pending(nodeId) <= spillThreshold) {
+            return nodeId;
+        }
+
+        var target = nodeId;
+        var lowest = Integer.MAX_VALUE;
+        for (var hint : remoteHints.entrySet()) {
+            var load = hint.getValue() + pending(hint.getKey());
+            if (load < lowest) {
+                target = hint.getKey();
+                lowest = load;
+            }
+        }
+
+        // stay local if every other node is at least as busy
+        return lowest < pending(nodeId) ? target : nodeId;
+    }
+
+    private int pending(String node) {
+        return pending.getOrDefault(node, 0);
+    }
+
+    private Future<HelloBatch> send(String address, String metricsAddress, DeliveryOptions options, HelloBatch batch) {
+
+        var promise = Promise.<Message<HelloBatch>>promise();
+        vertx.eventBus().request(address, batch, options, promise);
+        return metrics.timeRequest(metricsAddress, promise.future()).map(Message::body);
+    }
+
+    private void exchangeHints() {
+
+        // hints outlive a few missed intervals, but not a node which left the cluster
+        loadMap.put(nodeId, pending(nodeId), hintIntervalMillis * 4, ar -> {
+            if (ar.failed()) {
+                LOG.warn("Could not publish load hint", ar.cause());
+            }
+        });
+
+        loadMap.entries(ar -> {
+
+            if (ar.failed()) {
+                LOG.warn("Could not read load hints", ar.cause());
+                return;
+            }
+
+            var hints = new HashMap<>(ar.result());
+            hints.remove(nodeId);
+            remoteHints = hints;
+        });
+    }
+}
@@ -1,8 +1,12 @@
 package demo;
 
+import demo.common.CoarseClock;
+import demo.common.HelloBatch;
+import demo.common.HelloBatcher;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.Message;
 
-import java.time.Instant;
 import java.util.UUID;
 
 public class HelloVerticle extends AbstractVerticle {
@@ -11,13 +15,22 @@ public class HelloVerticle extends AbstractVerticle {
 
     @Override
     public void start() throws Exception {
+
+        var clock = CoarseClock.get(vertx);
+
         vertx.eventBus().consumer("hello.vertx.addr", msg -> {
             msg.reply("Hello Vertx World");
         });
 
         vertx.eventBus().consumer("hello.named.addr", msg -> {
             String name = (String) msg.body();
-            msg.reply(String.format("Hello %s! %s @%s", name, Instant.now(), verticleId));
+            msg.reply(String.format("Hello %s! %s @%s", name, clock.iso(), verticleId));
         });
+
+        Handler<Message<HelloBatch>> greetAll = msg -> msg.reply(msg.body().greetAll(clock.iso(), verticleId));
+
+        // the shared address is round-robined over all nodes, the node address lets HelloRouter pick this node
+        vertx.eventBus().consumer(HelloBatcher.BATCH_ADDRESS, greetAll);
+        vertx.eventBus().consumer(HelloRouter.nodeAddress(config().getString("nodeId", verticleId)), greetAll);
     }
 }
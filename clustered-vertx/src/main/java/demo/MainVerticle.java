@@ -1,40 +1,109 @@
 package demo;
 
+import demo.common.CoarseClock;
+import demo.common.HelloBatch;
+import demo.common.HelloBatchCodec;
+import demo.common.HelloBatcher;
+import demo.common.RequestGuard;
+import demo.common.RequestGuardConfig;
+import demo.metrics.MetricsRoutes;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 
+import java.util.UUID;
+
 /**
  * java -jar target/*.jar -cluster -Djava.net.preferIPv4Stack=true -Dhttp.port=8081 &
  * java -jar target/*.jar -cluster -Djava.net.preferIPv4Stack=true -Dhttp.port=8082 &
  * java -jar target/*.jar -cluster -Djava.net.preferIPv4Stack=true -Dhttp.port=8083 &
+ * <p>
+ * {@code -Dhello.routing=ROUND_ROBIN} spreads hello batches over all nodes instead of preferring the local consumer,
+ * {@code -Dhello.cache=false} computes every greeting instead of serving it from the {@link HelloCache}.
  */
 public class MainVerticle extends AbstractVerticle {
 
+    private HelloRouter helloRouter;
+
+    private HelloBatcher helloBatcher;
+
+    private HelloCache helloCache;
+
     @Override
-    public void start() {
+    public void start(Promise<Void> startPromise) {
+
+        // the clock timer belongs to this verticle, which lives as long as the application
+        CoarseClock.get(vertx);
+
+        // hello.named.addr requests are batched into single messages with a compact binary codec
+        vertx.eventBus().registerDefaultCodec(HelloBatch.class, new HelloBatchCodec());
+
+        // a node without a reachable hello consumer answers with 503 instead of holding the connection for 30s
+        var guard = new RequestGuard(vertx, HelloBatcher.BATCH_ADDRESS, RequestGuardConfig.from(config(), HelloBatcher.BATCH_ADDRESS));
+
+        var nodeId = UUID.randomUUID().toString();
+        helloRouter = new HelloRouter(vertx, nodeId,
+                HelloRouter.Mode.valueOf(System.getProperty("hello.routing", HelloRouter.Mode.LOCAL_FIRST.name())),
+                Integer.getInteger("hello.routing.spillThreshold", 256),
+                Long.getLong("hello.routing.hintInterval", 250L),
+                guard.deliveryOptions());
+        helloBatcher = new HelloBatcher(vertx, Long.getLong("hello.batch.window", 1L), Integer.getInteger("hello.batch.maxSize", 64), guard, helloRouter::request);
 
-        vertx.deployVerticle(new HelloVerticle());
+        if (Boolean.parseBoolean(System.getProperty("hello.cache", "true"))) {
+            helloCache = new HelloCache(vertx, nodeId,
+                    Integer.getInteger("hello.cache.maxEntries", 10_000),
+                    Long.getLong("hello.cache.ttl", 1000L),
+                    Long.getLong("hello.cache.nearTtl", 250L));
+        }
 
         Router r = Router.router(vertx);
+        MetricsRoutes.install(vertx, r);
         r.get("/api/v1/hello").handler(this::onHello);
         r.get("/api/v1/hello/:name").handler(this::onHelloName);
 
-        getVertx().createHttpServer().requestHandler(r).listen(Integer.getInteger("http.port", 8080));
+        // the local consumer has to be registered before the first request is routed to it
+        var deployed = Promise.<String>promise();
+        vertx.deployVerticle(new HelloVerticle(), new DeploymentOptions().setConfig(new JsonObject().put("nodeId", nodeId)), deployed);
+
+        deployed.future()
+                .compose(id -> helloRouter.start())
+                .compose(v -> helloCache == null ? Future.<Void>succeededFuture() : helloCache.start())
+                .compose(v -> {
+                    var listening = Promise.<HttpServer>promise();
+                    getVertx().createHttpServer().requestHandler(r).listen(Integer.getInteger("http.port", 8080), listening);
+                    return listening.future();
+                })
+                .<Void>mapEmpty()
+                .onComplete(startPromise);
     }
 
     private void onHelloName(RoutingContext ctx) {
-        vertx.eventBus().request("hello.named.addr", ctx.pathParam("name"), reply -> {
-            ctx.request().response().end((String) reply.result().body());
-        });
-
+        greeting(ctx.pathParam("name")).onComplete(reply -> respond(ctx, reply));
     }
 
     private void onHello(RoutingContext ctx) {
 
-        vertx.eventBus().request("hello.named.addr", "", reply -> {
-            ctx.request().response().end((String) reply.result().body());
-        });
+        greeting("").onComplete(reply -> respond(ctx, reply));
+    }
+
+    private Future<String> greeting(String name) {
+        return helloCache == null ? helloBatcher.request(name) : helloCache.get(name, helloBatcher::request);
+    }
+
+    private static void respond(RoutingContext ctx, AsyncResult<String> reply) {
+
+        if (reply.failed()) {
+            RequestGuard.fail(ctx.response(), reply.cause());
+            return;
+        }
+
+        ctx.response().end(reply.result());
     }
 
 }
@@ -0,0 +1,92 @@
+package demo.common;
+
+import io.vertx.core.Vertx;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Millisecond clock with a pre-formatted ISO-8601 timestamp for hot response paths.
+ * <p>
+ * A periodic timer formats the current time once per millisecond, handlers only read the ready-made {@link String}
+ * and bytes from a volatile field, similar to the cached {@code Date} header in Netty. The timer lives on the context
+ * which first calls {@link #get(Vertx)}, so call it from a verticle which lives as long as the application, or from
+ * outside a verticle like {@link HttpLauncher} does.
+ */
+public final class CoarseClock {
+
+    private static final DateTimeFormatter ISO = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    private static final Map<Vertx, CoarseClock> CLOCKS = new WeakHashMap<>();
+
+    private volatile Tick tick;
+
+    private CoarseClock() {
+        this.tick = new Tick(System.currentTimeMillis());
+    }
+
+    /**
+     * @return the clock of the given {@link Vertx} instance, starting it on first use
+     */
+    public static CoarseClock get(Vertx vertx) {
+
+        synchronized (CLOCKS) {
+
+            var clock = CLOCKS.get(vertx);
+            if (clock == null) {
+                clock = new CoarseClock();
+                var started = clock;
+                vertx.setPeriodic(1, id -> started.update());
+                CLOCKS.put(vertx, clock);
+            }
+
+            return clock;
+        }
+    }
+
+    public long millis() {
+        return tick.millis;
+    }
+
+    /**
+     * @return the current time formatted like {@code 2020-10-18T13:37:00.042Z}
+     */
+    public String iso() {
+        return tick.iso;
+    }
+
+    /**
+     * @return the US-ASCII bytes of {@link #iso()}, shared between callers and must not be modified
+     */
+    public byte[] isoBytes() {
+        return tick.isoBytes;
+    }
+
+    private void update() {
+
+        var now = System.currentTimeMillis();
+        if (now != tick.millis) {
+            tick = new Tick(now);
+        }
+    }
+
+    private static class Tick {
+
+        private final long millis;
+
+        private final String iso;
+
+        private final byte[] isoBytes;
+
+        Tick(long millis) {
+            this.millis = millis;
+            this.iso = ISO.format(Instant.ofEpochMilli(millis));
+            this.isoBytes = iso.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package demo.common;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Computes which top-level subtrees of a configuration changed, so that only the affected components are
+ * reconfigured on reload.
+ */
+public final class ConfigDiff {
+
+    private final Set<String> changed;
+
+    private ConfigDiff(Set<String> changed) {
+        this.changed = changed;
+    }
+
+    public static ConfigDiff between(JsonObject previous, JsonObject current) {
+
+        var previousKeys = previous == null ? Set.<String>of() : previous.fieldNames();
+        var currentKeys = current == null ? Set.<String>of() : current.fieldNames();
+
+        var keys = new TreeSet<String>(previousKeys);
+        keys.addAll(currentKeys);
+
+        var changed = new TreeSet<String>();
+        for (var key : keys) {
+            var before = previous == null ? null : previous.getValue(key);
+            var after = current == null ? null : current.getValue(key);
+            if (!Objects.equals(before, after)) {
+                changed.add(key);
+            }
+        }
+
+        return new ConfigDiff(changed);
+    }
+
+    public boolean changed(String subtree) {
+        return changed.contains(subtree);
+    }
+
+    public boolean isEmpty() {
+        return changed.isEmpty();
+    }
+
+    public Set<String> changedSubtrees() {
+        return changed;
+    }
+
+    @Override
+    public String toString() {
+        return changed.toString();
+    }
+}
@@ -0,0 +1,134 @@
+package demo.common;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and validates values of a config subtree while binding it to an immutable snapshot.
+ * <p>
+ * Missing values fall back to the given defaults, values of the wrong type or out of range fail with an
+ * {@link IllegalArgumentException} naming the full path of the offending key. Only meant for startup and reload,
+ * request handling should work on the bound snapshot.
+ */
+public final class ConfigReader {
+
+    private final JsonObject json;
+
+    private final String path;
+
+    private ConfigReader(JsonObject json, String path) {
+        this.json = json == null ? new JsonObject() : json;
+        this.path = path;
+    }
+
+    public static ConfigReader of(JsonObject json) {
+        return new ConfigReader(json, "");
+    }
+
+    public ConfigReader object(String key) {
+        var value = value(key, JsonObject.class);
+        return new ConfigReader((JsonObject) value, qualify(key) + ".");
+    }
+
+    public String string(String key, String defaultValue) {
+        var value = value(key, String.class);
+        return value == null ? defaultValue : (String) value;
+    }
+
+    public String requiredString(String key) {
+
+        var value = string(key, null);
+        if (value == null || value.isBlank()) {
+            throw invalid(key, value, "is required");
+        }
+
+        return value;
+    }
+
+    public int integer(String key, int defaultValue, int min, int max) {
+
+        var result = wholeNumber(key, defaultValue);
+        if (result < min || result > max) {
+            throw invalid(key, result, "must be between " + min + " and " + max);
+        }
+
+        return (int) result;
+    }
+
+    public long longValue(String key, long defaultValue, long min) {
+
+        var result = wholeNumber(key, defaultValue);
+        if (result < min) {
+            throw invalid(key, result, "must be at least " + min);
+        }
+
+        return result;
+    }
+
+    public boolean bool(String key, boolean defaultValue) {
+        var value = value(key, Boolean.class);
+        return value == null ? defaultValue : (Boolean) value;
+    }
+
+    public List<String> strings(String key, List<String> defaultValue) {
+
+        var value = (JsonArray) value(key, JsonArray.class);
+        if (value == null) {
+            return List.copyOf(defaultValue);
+        }
+
+        var result = new ArrayList<String>(value.size());
+        for (var item : value) {
+            if (!(item instanceof String)) {
+                throw invalid(key, value, "must only contain strings");
+            }
+            result.add((String) item);
+        }
+
+        return List.copyOf(result);
+    }
+
+    public IllegalArgumentException invalid(String key, Object value, String reason) {
+        return new IllegalArgumentException("Invalid config value " + qualify(key) + "=" + value + ": " + reason);
+    }
+
+    /**
+     * Reads a number without truncating it, {@code 8080.0} is accepted but {@code 8080.5} and values beyond the range
+     * of a {@code long} are not.
+     */
+    private long wholeNumber(String key, long defaultValue) {
+
+        var value = (Number) value(key, Number.class);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return value.longValue();
+        }
+
+        try {
+            return new BigDecimal(value.toString()).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw invalid(key, value, "must be a whole number");
+        }
+    }
+
+    private Object value(String key, Class<?> type) {
+
+        var value = json.getValue(key);
+        if (value != null && !type.isInstance(value)) {
+            throw invalid(key, value, "expected " + type.getSimpleName());
+        }
+
+        return value;
+    }
+
+    private String qualify(String key) {
+        return path + key;
+    }
+}
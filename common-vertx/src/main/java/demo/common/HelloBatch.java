@@ -0,0 +1,36 @@
+package demo.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch of {@code hello.named.addr} names or greetings sent as a single event bus message.
+ */
+public final class HelloBatch {
+
+    private final List<String> items;
+
+    public HelloBatch(List<String> items) {
+        this.items = items;
+    }
+
+    public List<String> items() {
+        return items;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * @return the greetings for a batch of names, in the same order
+     */
+    public HelloBatch greetAll(String timestamp, String instanceId) {
+        var suffix = "! " + timestamp + " @" + instanceId;
+        var greetings = new ArrayList<String>(items.size());
+        for (var name : items) {
+            greetings.add("Hello " + name + suffix);
+        }
+        return new HelloBatch(greetings);
+    }
+}
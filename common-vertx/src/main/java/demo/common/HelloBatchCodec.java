@@ -0,0 +1,57 @@
+package demo.common;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Compact binary codec for {@link HelloBatch}: an item count followed by length prefixed UTF-8 items.
+ * Local deliveries pass the batch through without copying, since batches are never modified after sending.
+ */
+public class HelloBatchCodec implements MessageCodec<HelloBatch, HelloBatch> {
+
+    public static final String NAME = "hello-batch";
+
+    @Override
+    public void encodeToWire(Buffer buffer, HelloBatch batch) {
+        buffer.appendInt(batch.size());
+        for (var item : batch.items()) {
+            var bytes = item.getBytes(StandardCharsets.UTF_8);
+            buffer.appendInt(bytes.length).appendBytes(bytes);
+        }
+    }
+
+    @Override
+    public HelloBatch decodeFromWire(int pos, Buffer buffer) {
+
+        var size = buffer.getInt(pos);
+        pos += Integer.BYTES;
+
+        var items = new ArrayList<String>(size);
+        for (var i = 0; i < size; i++) {
+            var length = buffer.getInt(pos);
+            pos += Integer.BYTES;
+            items.add(buffer.getString(pos, pos + length, "UTF-8"));
+            pos += length;
+        }
+
+        return new HelloBatch(items);
+    }
+
+    @Override
+    public HelloBatch transform(HelloBatch batch) {
+        return batch;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
@@ -0,0 +1,101 @@
+package demo.common;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Collects {@code hello.named.addr} requests for a short window, or until {@code maxBatchSize} requests are pending,
+ * and sends them as a single {@link HelloBatch} message. The greetings of the reply are fanned out to the individual
+ * callers in order, a reply of another size fails the whole batch. Every batch passes the {@link RequestGuard} of the address, so a failed or rejected batch counts
+ * once and fails all of its callers. How a batch is sent, to which address and node, is up to the given function.
+ * Must be used from a single event loop.
+ */
+public class HelloBatcher {
+
+    public static final String BATCH_ADDRESS = "hello.named.batch.addr";
+
+    private final Vertx vertx;
+
+    private final long windowMillis;
+
+    private final int maxBatchSize;
+
+    private final RequestGuard guard;
+
+    private final Function<HelloBatch, Future<HelloBatch>> send;
+
+    private List<String> names = new ArrayList<>();
+
+    private List<Promise<String>> callers = new ArrayList<>();
+
+    private long flushTimerId = -1;
+
+    public HelloBatcher(Vertx vertx, long windowMillis, int maxBatchSize, RequestGuard guard,
+                        Function<HelloBatch, Future<HelloBatch>> send) {
+        this.vertx = vertx;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.guard = guard;
+        this.send = send;
+    }
+
+    public Future<String> request(String name) {
+
+        var promise = Promise.<String>promise();
+        names.add(name);
+        callers.add(promise);
+
+        if (names.size() >= maxBatchSize) {
+            flush();
+        } else if (flushTimerId == -1) {
+            flushTimerId = vertx.setTimer(windowMillis, id -> {
+                flushTimerId = -1;
+                flush();
+            });
+        }
+
+        return promise.future();
+    }
+
+    private void flush() {
+
+        if (flushTimerId != -1) {
+            vertx.cancelTimer(flushTimerId);
+            flushTimerId = -1;
+        }
+
+        if (names.isEmpty()) {
+            return;
+        }
+
+        var batch = new HelloBatch(names);
+        var batchCallers = callers;
+        names = new ArrayList<>(maxBatchSize);
+        callers = new ArrayList<>(maxBatchSize);
+
+        guard.execute(() -> send.apply(batch)).onComplete(reply -> {
+
+            if (reply.failed()) {
+                batchCallers.forEach(caller -> caller.fail(reply.cause()));
+                return;
+            }
+
+            var greetings = reply.result().items();
+            if (greetings.size() != batchCallers.size()) {
+                var mismatch = new IllegalStateException(String.format("Got %d greetings for a batch of %d names",
+                        greetings.size(), batchCallers.size()));
+                batchCallers.forEach(caller -> caller.fail(mismatch));
+                return;
+            }
+
+            for (var i = 0; i < batchCallers.size(); i++) {
+                batchCallers.get(i).complete(greetings.get(i));
+            }
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package demo.common;
+
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.NetServerOptions;
+
+import java.util.Objects;
+
+/**
+ * Immutable settings of the {@code http} config subtree, falling back to the {@code http.*} system properties.
+ */
+public final class HttpConfig {
+
+    private final int port;
+
+    private final int acceptBacklog;
+
+    private final boolean compression;
+
+    private final int compressionLevel;
+
+    private HttpConfig(int port, int acceptBacklog, boolean compression, int compressionLevel) {
+        this.port = port;
+        this.acceptBacklog = acceptBacklog;
+        this.compression = compression;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Binds the {@code http} subtree of the given config.
+     *
+     * @throws IllegalArgumentException if a value is invalid
+     */
+    public static HttpConfig from(JsonObject config, int defaultPort) {
+
+        var http = ConfigReader.of(config).object("http");
+
+        return new HttpConfig(
+                http.integer("port", Integer.getInteger("http.port", defaultPort), 0, 65535),
+                http.integer("acceptBacklog", Integer.getInteger("http.acceptBacklog", NetServerOptions.DEFAULT_ACCEPT_BACKLOG), -1, Integer.MAX_VALUE),
+                http.bool("compression", Boolean.getBoolean("http.compression")),
+                http.integer("compressionLevel", Integer.getInteger("http.compressionLevel", HttpServerOptions.DEFAULT_COMPRESSION_LEVEL), 1, 9));
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public int acceptBacklog() {
+        return acceptBacklog;
+    }
+
+    public boolean compression() {
+        return compression;
+    }
+
+    public int compressionLevel() {
+        return compressionLevel;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof HttpConfig)) {
+            return false;
+        }
+
+        var that = (HttpConfig) o;
+        return port == that.port
+                && acceptBacklog == that.acceptBacklog
+                && compression == that.compression
+                && compressionLevel == that.compressionLevel;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(port, acceptBacklog, compression, compressionLevel);
+    }
+
+    @Override
+    public String toString() {
+        return "HttpConfig{port=" + port + ", acceptBacklog=" + acceptBacklog + ", compression=" + compression
+                + ", compressionLevel=" + compressionLevel + "}";
+    }
+}
@@ -0,0 +1,59 @@
+package demo.common;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Launcher;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Launcher which deploys the main verticle once per core, so that every event loop accepts and serves HTTP requests.
+ * <p>
+ * The number of instances can be set with {@code -instances}, {@code http.instances} in the config or the
+ * {@code http.instances} system property. Prefers the native epoll transport and falls back to NIO when it is not
+ * available on the current platform.
+ */
+public class HttpLauncher extends Launcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpLauncher.class);
+
+    public static void main(String[] args) {
+        new HttpLauncher().dispatch(args);
+    }
+
+    @Override
+    public void beforeStartingVertx(VertxOptions options) {
+        options.setPreferNativeTransport(true);
+    }
+
+    @Override
+    public void afterStartingVertx(Vertx vertx) {
+
+        // start the clock outside of the verticles, so it is not cancelled when an instance is undeployed
+        CoarseClock.get(vertx);
+
+        if (vertx.isNativeTransportEnabled()) {
+            LOG.info("Using native transport");
+            return;
+        }
+
+        LOG.info("Native transport not available, falling back to NIO");
+    }
+
+    @Override
+    public void beforeDeployingVerticle(DeploymentOptions deploymentOptions) {
+
+        if (deploymentOptions.getInstances() != DeploymentOptions.DEFAULT_INSTANCES) {
+            // explicitly requested with -instances
+            return;
+        }
+
+        var config = deploymentOptions.getConfig() == null ? new JsonObject() : deploymentOptions.getConfig();
+        var http = config.getJsonObject("http", new JsonObject());
+        var instances = http.getInteger("instances", Integer.getInteger("http.instances", Runtime.getRuntime().availableProcessors()));
+
+        deploymentOptions.setInstances(instances);
+    }
+}
@@ -0,0 +1,49 @@
+package demo.common;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Creates tuned {@link HttpServerOptions} for servers which are deployed once per event loop.
+ * <p>
+ * Settings are bound via {@link HttpConfig} from the {@code http} object of the verticle config and fall back to the
+ * {@code http.*} system properties:
+ * <ul>
+ *     <li>{@code port}</li>
+ *     <li>{@code acceptBacklog}, the OS default if not set</li>
+ *     <li>{@code compression}, {@code false} by default</li>
+ *     <li>{@code compressionLevel}, {@code 6} by default</li>
+ * </ul>
+ * All instances of a {@link Vertx} listening on the same port share a single server socket, vert.x hands its accepted
+ * connections to the instances round-robin, each served on the event loop of its instance. {@code SO_REUSEPORT} only
+ * lets further processes, like a second JVM during a restart, bind the same port next to it. It is set with the native
+ * transport only, like {@code TCP_FASTOPEN} and {@code TCP_QUICKACK}.
+ */
+public final class HttpServers {
+
+    private HttpServers() {
+    }
+
+    public static HttpServerOptions options(Vertx vertx, JsonObject config, int defaultPort) {
+        return options(vertx, HttpConfig.from(config, defaultPort));
+    }
+
+    public static HttpServerOptions options(Vertx vertx, HttpConfig http) {
+
+        var options = new HttpServerOptions()
+                .setPort(http.port())
+                .setAcceptBacklog(http.acceptBacklog())
+                .setCompressionSupported(http.compression())
+                .setCompressionLevel(http.compressionLevel())
+                .setTcpNoDelay(true);
+
+        if (vertx.isNativeTransportEnabled()) {
+            options.setReusePort(true)
+                    .setTcpFastOpen(true)
+                    .setTcpQuickAck(true);
+        }
+
+        return options;
+    }
+}
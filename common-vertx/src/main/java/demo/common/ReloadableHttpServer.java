@@ -0,0 +1,171 @@
+package demo.common;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HTTP server which can be moved to another port without dropping requests.
+ * <p>
+ * On {@link #listen(HttpServerOptions)} with a different port the new server is bound first. Once it accepts
+ * connections, the old server drains: connections it accepts from then on are closed right away, requests on already
+ * open connections can complete. It is closed once its last connection closed, at the latest after {@code drainMillis}.
+ * <p>
+ * Servers of a {@link Vertx} on the same port share one socket and the options of the first server, so other options
+ * can only be changed together with the port or by a restart. Must be used from a single event loop.
+ */
+public class ReloadableHttpServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReloadableHttpServer.class);
+
+    private final Vertx vertx;
+
+    private final Handler<HttpServerRequest> requestHandler;
+
+    private final long drainMillis;
+
+    private Binding current;
+
+    private final List<Binding> draining = new ArrayList<>();
+
+    public ReloadableHttpServer(Vertx vertx, Handler<HttpServerRequest> requestHandler, long drainMillis) {
+        this.vertx = vertx;
+        this.requestHandler = requestHandler;
+        this.drainMillis = drainMillis;
+    }
+
+    /**
+     * Binds a server with the given options, replacing the current server if the port changed.
+     *
+     * @return the current server, or a failed future if only options other than the port changed
+     */
+    public Future<HttpServer> listen(HttpServerOptions options) {
+
+        if (current != null && options.getPort() == current.options.getPort()) {
+
+            if (options.equals(current.options)) {
+                return Future.succeededFuture(current.server);
+            }
+
+            return Future.failedFuture(new IllegalStateException("Changed options of the HTTP server on port "
+                    + options.getPort() + " only apply together with another port or after a restart"));
+        }
+
+        // a draining server on the same port would share the socket and get every other new connection
+        Future<Void> released = Future.succeededFuture();
+        for (var binding : List.copyOf(draining)) {
+            if (binding.options.getPort() == options.getPort()) {
+                var closing = binding.close();
+                released = released.compose(v -> closing);
+            }
+        }
+
+        var binding = new Binding(new HttpServerOptions(options));
+
+        return released.compose(v -> Future.<HttpServer>future(binding.server::listen)).map(started -> {
+
+            var previous = current;
+            current = binding;
+
+            if (previous != null) {
+                LOG.info("Moved HTTP server from port " + previous.server.actualPort() + " to " + started.actualPort()
+                        + ", draining the previous server for up to " + drainMillis + "ms");
+                previous.drain();
+            }
+
+            return started;
+        });
+    }
+
+    public int actualPort() {
+        return current == null ? -1 : current.server.actualPort();
+    }
+
+    public Future<Void> close() {
+
+        List.copyOf(draining).forEach(Binding::close);
+
+        if (current == null) {
+            return Future.succeededFuture();
+        }
+
+        var binding = current;
+        current = null;
+
+        return binding.close();
+    }
+
+    private class Binding {
+
+        private final HttpServerOptions options;
+
+        private final HttpServer server;
+
+        private int connections;
+
+        private boolean retired;
+
+        private long drainTimerId = -1;
+
+        private Future<Void> closed;
+
+        Binding(HttpServerOptions options) {
+            this.options = options;
+            this.server = vertx.createHttpServer(options)
+                    .requestHandler(requestHandler)
+                    .connectionHandler(connection -> {
+
+                        // vert.x offers no way to stop accepting without closing the open connections as well
+                        if (retired) {
+                            connection.close();
+                            return;
+                        }
+
+                        connections++;
+                        connection.closeHandler(v -> {
+                            connections--;
+                            if (retired && connections == 0) {
+                                close();
+                            }
+                        });
+                    });
+        }
+
+        void drain() {
+
+            retired = true;
+            if (connections == 0) {
+                close();
+                return;
+            }
+
+            draining.add(this);
+            drainTimerId = vertx.setTimer(drainMillis, id -> {
+                drainTimerId = -1;
+                close();
+            });
+        }
+
+        Future<Void> close() {
+
+            if (closed == null) {
+                draining.remove(this);
+                if (drainTimerId != -1) {
+                    vertx.cancelTimer(drainTimerId);
+                    drainTimerId = -1;
+                }
+                closed = Future.future(server::close);
+            }
+
+            return closed;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package demo.common;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Protects the callers of an event bus address against a slow or missing consumer.
+ * <p>
+ * Requests are sent with the configured timeout instead of the default 30s, at most {@code maxInFlight} requests are
+ * pending at any time and after {@code failureThreshold} consecutive failures the circuit opens. While open, requests
+ * are rejected right away with a {@link RejectedException}. Once {@code resetTimeoutMillis} have passed a single probe
+ * request is let through, which closes the circuit again on success. Safe to share between event loops.
+ */
+public final class RequestGuard {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RequestGuard.class);
+
+    private final String address;
+
+    private final RequestGuardConfig config;
+
+    private final CoarseClock clock;
+
+    private final DeliveryOptions deliveryOptions;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    /**
+     * Time until which the circuit is open, {@code 0} while closed.
+     */
+    private volatile long openUntil;
+
+    public RequestGuard(Vertx vertx, String address, RequestGuardConfig config) {
+        this.address = address;
+        this.config = config;
+        this.clock = CoarseClock.get(vertx);
+        this.deliveryOptions = new DeliveryOptions().setSendTimeout(config.timeoutMillis());
+    }
+
+    /**
+     * Options to send the guarded event bus requests with.
+     */
+    public DeliveryOptions deliveryOptions() {
+        return deliveryOptions;
+    }
+
+    /**
+     * Runs the given request unless the circuit is open or too many requests are pending.
+     */
+    public <T> Future<T> execute(Supplier<Future<T>> request) {
+
+        var probe = false;
+        var open = openUntil;
+        if (open != 0) {
+
+            var now = clock.millis();
+            if (now < open) {
+                return Future.failedFuture(new RejectedException(address + " circuit is open", open - now));
+            }
+
+            // half open, only one request may find out whether the consumer recovered
+            if (!probing.compareAndSet(false, true)) {
+                return Future.failedFuture(new RejectedException(address + " circuit is half open", config.resetTimeoutMillis()));
+            }
+            probe = true;
+        }
+
+        if (inFlight.incrementAndGet() > config.maxInFlight()) {
+            inFlight.decrementAndGet();
+            if (probe) {
+                probing.set(false);
+            }
+            return Future.failedFuture(new RejectedException(address + " has too many requests in flight", 1000));
+        }
+
+        Future<T> result;
+        try {
+            result = request.get();
+        } catch (RuntimeException e) {
+            result = Future.failedFuture(e);
+        }
+
+        var isProbe = probe;
+        return result.onComplete(ar -> {
+            inFlight.decrementAndGet();
+            if (ar.succeeded()) {
+                onSuccess(isProbe);
+            } else {
+                onFailure(isProbe);
+            }
+        });
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public boolean isOpen() {
+        return openUntil != 0;
+    }
+
+    private void onSuccess(boolean probe) {
+
+        consecutiveFailures.set(0);
+        if (probe) {
+            openUntil = 0;
+            probing.set(false);
+            LOG.info("Circuit for " + address + " closed");
+        }
+    }
+
+    private void onFailure(boolean probe) {
+
+        if (probe) {
+            openUntil = clock.millis() + config.resetTimeoutMillis();
+            probing.set(false);
+            return;
+        }
+
+        if (consecutiveFailures.incrementAndGet() >= config.failureThreshold() && openUntil == 0) {
+            openUntil = clock.millis() + config.resetTimeoutMillis();
+            LOG.warn("Circuit for " + address + " opened after " + config.failureThreshold() + " consecutive failures");
+        }
+    }
+
+    /**
+     * Ends the response of a failed guarded request: {@code 503} with {@code Retry-After} for rejected requests and
+     * missing consumers, {@code 504} for timeouts and {@code 500} otherwise.
+     */
+    public static void fail(HttpServerResponse response, Throwable cause) {
+
+        if (cause instanceof RejectedException) {
+            var retryAfterSeconds = Math.max(1, (((RejectedException) cause).retryAfterMillis() + 999) / 1000);
+            response.setStatusCode(503).putHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds)).end();
+            return;
+        }
+
+        if (cause instanceof ReplyException) {
+            var failure = ((ReplyException) cause).failureType();
+            if (failure == ReplyFailure.TIMEOUT) {
+                response.setStatusCode(504).end();
+                return;
+            }
+            if (failure == ReplyFailure.NO_HANDLERS) {
+                response.setStatusCode(503).putHeader(HttpHeaders.RETRY_AFTER, "1").end();
+                return;
+            }
+        }
+
+        response.setStatusCode(500).end();
+    }
+
+    /**
+     * Signals a request which was not sent at all. Carries no stack trace, as it is expected under load.
+     */
+    public static final class RejectedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterMillis;
+
+        RejectedException(String message, long retryAfterMillis) {
+            super(message, null, false, false);
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public long retryAfterMillis() {
+            return retryAfterMillis;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package demo.common;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Objects;
+
+/**
+ * Immutable settings of a {@link RequestGuard} for one event bus address, bound from the {@code eventbus.<address>}
+ * config subtree and falling back to the {@code eventbus.*} system properties.
+ */
+public final class RequestGuardConfig {
+
+    private final long timeoutMillis;
+
+    private final int maxInFlight;
+
+    private final int failureThreshold;
+
+    private final long resetTimeoutMillis;
+
+    private RequestGuardConfig(long timeoutMillis, int maxInFlight, int failureThreshold, long resetTimeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.maxInFlight = maxInFlight;
+        this.failureThreshold = failureThreshold;
+        this.resetTimeoutMillis = resetTimeoutMillis;
+    }
+
+    /**
+     * Binds the settings of the given address.
+     *
+     * @throws IllegalArgumentException if a value is invalid
+     */
+    public static RequestGuardConfig from(JsonObject config, String address) {
+
+        var guard = ConfigReader.of(config).object("eventbus").object(address);
+
+        return new RequestGuardConfig(
+                guard.longValue("timeoutMillis", Long.getLong("eventbus.timeoutMillis", 2000L), 1),
+                guard.integer("maxInFlight", Integer.getInteger("eventbus.maxInFlight", 1024), 1, Integer.MAX_VALUE),
+                guard.integer("failureThreshold", Integer.getInteger("eventbus.failureThreshold", 20), 1, Integer.MAX_VALUE),
+                guard.longValue("resetTimeoutMillis", Long.getLong("eventbus.resetTimeoutMillis", 5000L), 1));
+    }
+
+    /**
+     * Send timeout of a single event bus request.
+     */
+    public long timeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Maximum number of pending requests, further requests are rejected.
+     */
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Number of consecutive failures which opens the circuit.
+     */
+    public int failureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * How long the circuit stays open before a single probe request is let through.
+     */
+    public long resetTimeoutMillis() {
+        return resetTimeoutMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof RequestGuardConfig)) {
+            return false;
+        }
+
+        var that = (RequestGuardConfig) o;
+        return timeoutMillis == that.timeoutMillis
+                && maxInFlight == that.maxInFlight
+                && failureThreshold == that.failureThreshold
+                && resetTimeoutMillis == that.resetTimeoutMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timeoutMillis, maxInFlight, failureThreshold, resetTimeoutMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "RequestGuardConfig{timeoutMillis=" + timeoutMillis + ", maxInFlight=" + maxInFlight
+                + ", failureThreshold=" + failureThreshold + ", resetTimeoutMillis=" + resetTimeoutMillis + "}";
+    }
+}
@@ -1,5 +1,12 @@
 package demo;
 
+import demo.common.CoarseClock;
+import demo.common.ConfigDiff;
+import demo.common.HttpConfig;
+import demo.common.HttpServers;
+import demo.common.ReloadableHttpServer;
+import demo.metrics.MetricsRoutes;
+import io.vertx.config.ConfigChange;
 import io.vertx.config.ConfigRetriever;
 import io.vertx.config.ConfigRetrieverOptions;
 import io.vertx.config.ConfigStoreOptions;
@@ -7,58 +14,107 @@ import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Promise;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 
-import java.time.Instant;
-
 public class MainVerticle extends AbstractVerticle {
 
+    private static final Logger LOG = LoggerFactory.getLogger(MainVerticle.class);
+
+    private CoarseClock clock;
+
+    private ReloadableHttpServer server;
+
+    private volatile HttpConfig httpConfig;
+
     @Override
     public void start(Promise<Void> start) {
 
+        clock = CoarseClock.get(vertx);
+
         var router = Router.router(vertx);
+        MetricsRoutes.install(vertx, router);
         router.get("/api/v1/hello").handler(this::onHello);
         router.get("/api/v1/hello/:name").handler(this::onHelloName);
 
+        server = new ReloadableHttpServer(vertx, router, Long.getLong("http.drainMillis", 30_000L));
 
         var yamlConfigOpts = new ConfigStoreOptions() //
                 .setFormat("yaml") //
                 .setType("file") //
                 .setConfig(new JsonObject().put("path", "config.yaml"));
 
+        // check config.yaml for changes periodically
         var configRetrieverOpts = new ConfigRetrieverOptions() //
+                .setScanPeriod(Long.getLong("config.scanPeriod", 2000L)) //
                 .addStore(yamlConfigOpts);
 
         var configRetriever = ConfigRetriever.create(vertx, configRetrieverOpts);
 
-        configRetriever.getConfig(ar -> handleConfigResults(ar, start, router));
+        configRetriever.getConfig(ar -> handleConfigResults(ar, start));
+
+        // changes are only applied once the initial bind completed, so two binds never run concurrently
+        start.future().onSuccess(v -> configRetriever.listen(this::onConfigChange));
     }
 
-    private void handleConfigResults(AsyncResult<JsonObject> ar, Promise<Void> start, Router r) {
+    private void handleConfigResults(AsyncResult<JsonObject> ar, Promise<Void> start) {
 
         if (ar.failed()) {
             start.fail("Could not parse configuration!");
             return;
         }
 
-        JsonObject config = ar.result();
+        // fail fast on invalid values
+        HttpConfig initial;
+        try {
+            initial = HttpConfig.from(ar.result(), 8090);
+        } catch (IllegalArgumentException e) {
+            start.fail(e);
+            return;
+        }
+
+        server.listen(HttpServers.options(vertx, initial))
+                .onSuccess(started -> httpConfig = initial)
+                .<Void>mapEmpty()
+                .onComplete(start);
+    }
+
+    private void onConfigChange(ConfigChange change) {
+
+        var diff = ConfigDiff.between(change.getPreviousConfiguration(), change.getNewConfiguration());
+        if (!diff.changed("http")) {
+            return;
+        }
 
-        Integer port = config.getJsonObject("http", new JsonObject()) //
-                .getInteger("port", 8090);
+        HttpConfig changed;
+        try {
+            changed = HttpConfig.from(change.getNewConfiguration(), 8090);
+        } catch (IllegalArgumentException e) {
+            LOG.error("Ignoring invalid configuration change: " + e.getMessage());
+            return;
+        }
+
+        if (changed.equals(httpConfig)) {
+            return;
+        }
 
-        getVertx().createHttpServer().requestHandler(r).listen(port);
+        LOG.info("Configuration changed: " + diff);
 
-        start.complete();
+        // the running server keeps the previous configuration if the change cannot be applied
+        server.listen(HttpServers.options(vertx, changed))
+                .onSuccess(started -> httpConfig = changed)
+                .onFailure(t -> LOG.error("Could not apply changed http configuration, keeping " + httpConfig + ": " + t.getMessage()));
     }
 
     private void onHelloName(RoutingContext ctx) {
         String name = ctx.pathParam("name");
-        ctx.request().response().end(String.format("Hi %s %s", name, Instant.now()));
+        ctx.request().response().end(String.format("Hi %s %s", name, clock.iso()));
     }
 
     private void onHello(RoutingContext ctx) {
-        ctx.request().response().end("Hi Vertex " + Instant.now());
+        ctx.request().response().end("Hi Vertex " + clock.iso());
     }
 
 }
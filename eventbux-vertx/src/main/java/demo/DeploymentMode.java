@@ -0,0 +1,17 @@
+package demo;
+
+/**
+ * How the hello consumers are deployed, selected via the {@code hello.mode} system property.
+ */
+enum DeploymentMode {
+
+    /**
+     * Hello consumers run as worker verticles, every request hops from the event loop to the worker pool and back.
+     */
+    WORKER,
+
+    /**
+     * One HTTP server instance per event loop, each with a co-located local hello consumer.
+     */
+    EVENT_LOOP
+}
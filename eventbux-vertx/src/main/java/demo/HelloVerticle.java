@@ -1,20 +1,32 @@
 package demo;
 
+import demo.common.CoarseClock;
+import demo.common.HelloBatch;
+import demo.common.HelloBatcher;
 import io.vertx.core.AbstractVerticle;
 
-import java.time.Instant;
-
 public class HelloVerticle extends AbstractVerticle {
 
     @Override
     public void start() throws Exception {
+
+        var clock = CoarseClock.get(vertx);
+
         vertx.eventBus().consumer("hello.vertx.addr", msg -> {
             msg.reply("Hello Vertx World");
         });
 
         vertx.eventBus().consumer("hello.named.addr", msg -> {
             String name = (String) msg.body();
-            msg.reply(String.format("Hello %s! %s @%s", name, Instant.now(), toString()));
+            msg.reply(greet(name, clock.iso(), toString()));
         });
+
+        vertx.eventBus().<HelloBatch>consumer(HelloBatcher.BATCH_ADDRESS, msg -> {
+            msg.reply(msg.body().greetAll(clock.iso(), toString()));
+        });
+    }
+
+    static String greet(String name, String timestamp, String instanceId) {
+        return String.format("Hello %s! %s @%s", name, timestamp, instanceId);
     }
 }
@@ -0,0 +1,103 @@
+package demo;
+
+import demo.common.CoarseClock;
+import demo.common.HelloBatch;
+import demo.common.HelloBatcher;
+import demo.common.RequestGuard;
+import demo.common.RequestGuardConfig;
+import demo.metrics.Metrics;
+import demo.metrics.MetricsRoutes;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.eventbus.Message;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Serves the hello API. In {@link DeploymentMode#EVENT_LOOP} mode each instance registers its own local-only hello
+ * consumer, which runs on the same event loop as the HTTP requests of this instance.
+ */
+public class HttpServerVerticle extends AbstractVerticle {
+
+    private HelloBatcher helloBatcher;
+
+    private String batchAddress;
+
+    private Metrics metrics;
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+
+        RequestGuardConfig guardConfig;
+        try {
+            guardConfig = RequestGuardConfig.from(config(), HelloBatcher.BATCH_ADDRESS);
+        } catch (IllegalArgumentException e) {
+            startPromise.fail(e);
+            return;
+        }
+
+        var mode = DeploymentMode.valueOf(config().getString("mode", DeploymentMode.WORKER.name()));
+
+        batchAddress = HelloBatcher.BATCH_ADDRESS;
+        if (mode == DeploymentMode.EVENT_LOOP) {
+
+            // local consumers are never serialized and are called on the event loop of this verticle
+            var clock = CoarseClock.get(vertx);
+            var instanceId = toString();
+            batchAddress = HelloBatcher.BATCH_ADDRESS + ".local." + instanceId;
+            vertx.eventBus().<HelloBatch>localConsumer(batchAddress, msg -> {
+                msg.reply(msg.body().greetAll(clock.iso(), instanceId));
+            });
+        }
+
+        metrics = Metrics.get(vertx);
+        var guard = new RequestGuard(vertx, HelloBatcher.BATCH_ADDRESS, guardConfig);
+        helloBatcher = new HelloBatcher(vertx, Long.getLong("hello.batch.window", 1L), Integer.getInteger("hello.batch.maxSize", 64),
+                guard, batch -> send(batchAddress, guard, batch));
+
+        Router r = Router.router(vertx);
+        MetricsRoutes.install(vertx, r);
+        r.get("/api/v1/hello").handler(this::onHello);
+        r.get("/api/v1/hello/:name").handler(this::onHelloName);
+
+        getVertx().createHttpServer().requestHandler(r).listen(config().getInteger("port", 8080), ar -> startPromise.handle(ar.mapEmpty()));
+    }
+
+    /**
+     * @return the address this instance sends its batches to, the local one in {@link DeploymentMode#EVENT_LOOP} mode
+     */
+    protected String batchAddress() {
+        return batchAddress;
+    }
+
+    private void onHelloName(RoutingContext ctx) {
+        helloBatcher.request(ctx.pathParam("name")).onComplete(reply -> respond(ctx, reply));
+    }
+
+    private void onHello(RoutingContext ctx) {
+
+        helloBatcher.request("").onComplete(reply -> respond(ctx, reply));
+    }
+
+    private Future<HelloBatch> send(String address, RequestGuard guard, HelloBatch batch) {
+
+        var sent = Promise.<Message<HelloBatch>>promise();
+        vertx.eventBus().request(address, batch, guard.deliveryOptions(), sent);
+
+        // local addresses are per instance, all of them are recorded under the shared address
+        return metrics.timeRequest(HelloBatcher.BATCH_ADDRESS, sent.future()).map(Message::body);
+    }
+
+    private static void respond(RoutingContext ctx, AsyncResult<String> reply) {
+
+        if (reply.failed()) {
+            RequestGuard.fail(ctx.response(), reply.cause());
+            return;
+        }
+
+        ctx.response().end(reply.result());
+    }
+
+}
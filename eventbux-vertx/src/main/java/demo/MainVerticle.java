@@ -1,38 +1,44 @@
 package demo;
 
+import demo.common.CoarseClock;
+import demo.common.HelloBatch;
+import demo.common.HelloBatchCodec;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.DeploymentOptions;
-import io.vertx.ext.web.Router;
-import io.vertx.ext.web.RoutingContext;
+import io.vertx.core.Promise;
+import io.vertx.core.VertxOptions;
 
+/**
+ * java -Dhello.mode=WORKER -jar target/*.jar
+ * java -Dhello.mode=EVENT_LOOP -jar target/*.jar
+ */
 public class MainVerticle extends AbstractVerticle {
 
     @Override
-    public void start() {
+    public void start(Promise<Void> startPromise) {
 
-        DeploymentOptions opts = new DeploymentOptions();
-        opts.setInstances(4).setWorker(true);
-        vertx.deployVerticle(HelloVerticle.class.getName(), opts);
+        // the clock timer belongs to this verticle, which lives as long as the application
+        CoarseClock.get(vertx);
 
-        Router r = Router.router(vertx);
-        r.get("/api/v1/hello").handler(this::onHello);
-        r.get("/api/v1/hello/:name").handler(this::onHelloName);
+        // hello.named.addr requests are batched into single messages with a compact binary codec
+        vertx.eventBus().registerDefaultCodec(HelloBatch.class, new HelloBatchCodec());
 
-        getVertx().createHttpServer().requestHandler(r).listen(Integer.getInteger("port", 8080));
-    }
+        var mode = DeploymentMode.valueOf(System.getProperty("hello.mode", DeploymentMode.WORKER.name()));
+        var config = config().copy().put("mode", mode.name()).put("port", Integer.getInteger("port", 8080));
 
-    private void onHelloName(RoutingContext ctx) {
-        vertx.eventBus().request("hello.named.addr", ctx.pathParam("name"), reply -> {
-            ctx.request().response().end((String) reply.result().body());
-        });
+        if (mode == DeploymentMode.WORKER) {
 
-    }
+            DeploymentOptions opts = new DeploymentOptions();
+            opts.setInstances(4).setWorker(true);
+            vertx.deployVerticle(HelloVerticle.class.getName(), opts);
 
-    private void onHello(RoutingContext ctx) {
+            vertx.deployVerticle(HttpServerVerticle.class.getName(), new DeploymentOptions().setConfig(config), ar -> startPromise.handle(ar.mapEmpty()));
+            return;
+        }
 
-        vertx.eventBus().request("hello.named.addr", "", reply -> {
-            ctx.request().response().end((String) reply.result().body());
-        });
+        // one HTTP server with its own hello consumer per event loop
+        var instances = Integer.getInteger("hello.instances", VertxOptions.DEFAULT_EVENT_LOOP_POOL_SIZE);
+        var opts = new DeploymentOptions().setInstances(instances).setConfig(config);
+        vertx.deployVerticle(HttpServerVerticle.class.getName(), opts, ar -> startPromise.handle(ar.mapEmpty()));
     }
-
 }
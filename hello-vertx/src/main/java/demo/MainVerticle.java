@@ -1,15 +1,18 @@
 package demo;
 
+import demo.common.CoarseClock;
+import demo.common.HttpServers;
+import demo.metrics.Metrics;
 import io.vertx.core.AbstractVerticle;
-
-import java.time.Instant;
+import io.vertx.core.Promise;
 
 public class MainVerticle extends AbstractVerticle {
 
     @Override
-    public void start() {
-        getVertx().createHttpServer().requestHandler(req -> {
-            req.response().end("Hi Vertex "  + Instant.now());
-        }).listen(8080);
+    public void start(Promise<Void> startPromise) {
+        var clock = CoarseClock.get(vertx);
+        getVertx().createHttpServer(HttpServers.options(vertx, config(), 8080)).requestHandler(Metrics.get(vertx).instrument("*", req -> {
+            req.response().end("Hi Vertex "  + clock.iso());
+        })).listen(ar -> startPromise.handle(ar.mapEmpty()));
     }
 }
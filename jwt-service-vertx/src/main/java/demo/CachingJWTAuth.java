@@ -0,0 +1,162 @@
+package demo;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.JWTOptions;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.jwt.JWTAuth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link JWTAuth} decorator that remembers successfully verified tokens until they expire.
+ * <p>
+ * Entries are keyed by the SHA-256 hash of the raw token, expire at the token's {@code exp} claim and are evicted in
+ * LRU order once {@code maxEntries} is reached. Tokens without an {@code exp} claim are never cached. Verified tokens
+ * are turned into {@link RealmUser}s, so role lookups are resolved once per token.
+ */
+public class CachingJWTAuth implements JWTAuth {
+
+    private final JWTAuth delegate;
+
+    private final RoleRegistry roleRegistry;
+
+    private final Map<String, CacheEntry> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    CachingJWTAuth(JWTAuth delegate, RoleRegistry roleRegistry, int maxEntries) {
+        this.delegate = delegate;
+        this.roleRegistry = roleRegistry;
+        this.entries = new LinkedHashMap<>(Math.min(maxEntries, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Creates a cache in front of the given {@link JWTAuth}, resolving the given realm roles of the verified tokens.
+     */
+    public static JWTAuth create(JWTAuth delegate, List<String> roles, String permissionsClaimKey, int maxEntries) {
+        return new CachingJWTAuth(delegate, new RoleRegistry(roles, permissionsClaimKey), maxEntries);
+    }
+
+    @Override
+    public void authenticate(JsonObject authInfo, Handler<AsyncResult<User>> resultHandler) {
+
+        var token = authInfo.getString("jwt");
+        if (token == null) {
+            delegate.authenticate(authInfo, resultHandler);
+            return;
+        }
+
+        var key = hash(token);
+        var now = System.currentTimeMillis();
+
+        var cached = lookup(key, now);
+        if (cached != null) {
+            hits.increment();
+            resultHandler.handle(Future.succeededFuture(cached));
+            return;
+        }
+
+        misses.increment();
+        delegate.authenticate(authInfo, ar -> {
+
+            if (ar.failed()) {
+                resultHandler.handle(ar);
+                return;
+            }
+
+            // resolve roles once per token
+            var user = roleRegistry.createUser(ar.result().principal());
+
+            var exp = user.principal().getLong("exp");
+            if (exp != null) {
+                store(key, new CacheEntry(user, exp * 1000));
+            }
+
+            resultHandler.handle(Future.succeededFuture(user));
+        });
+    }
+
+    @Override
+    public String generateToken(JsonObject claims, JWTOptions options) {
+        return delegate.generateToken(claims, options);
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized User lookup(String key, long now) {
+
+        var entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expiresAt <= now) {
+            entries.remove(key);
+            return null;
+        }
+
+        return entry.user;
+    }
+
+    private synchronized void store(String key, CacheEntry entry) {
+        entries.put(key, entry);
+    }
+
+    private static String hash(String token) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static class CacheEntry {
+
+        private final User user;
+
+        private final long expiresAt;
+
+        CacheEntry(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
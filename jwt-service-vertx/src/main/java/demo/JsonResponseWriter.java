@@ -0,0 +1,121 @@
+package demo;
+
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes flat JSON objects straight into a response {@link Buffer} without building an intermediate
+ * {@code JsonObject} or String.
+ * <p>
+ * Field names are pre-encoded once via {@link #name(String)}, constant bodies like {@link #FORBIDDEN} are shared
+ * between responses.
+ */
+final class JsonResponseWriter {
+
+    static final Buffer FORBIDDEN = Buffer.buffer("{\"error\": \"forbidden\"}");
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final Buffer buffer;
+
+    private boolean firstField = true;
+
+    private JsonResponseWriter(int sizeHint) {
+        this.buffer = Buffer.buffer(sizeHint).appendByte((byte) '{');
+    }
+
+    /**
+     * Starts a new JSON object with an initial buffer capacity of {@code sizeHint} bytes.
+     */
+    static JsonResponseWriter object(int sizeHint) {
+        return new JsonResponseWriter(sizeHint);
+    }
+
+    /**
+     * Pre-encodes the given field name including quotes and colon.
+     */
+    static byte[] name(String name) {
+        var writer = new JsonResponseWriter(name.length() + 3);
+        writer.string(name);
+        return writer.buffer.appendByte((byte) ':').getBytes(1, writer.buffer.length());
+    }
+
+    /**
+     * Ends the response with the given JSON body.
+     */
+    static void send(HttpServerResponse response, int statusCode, Buffer body) {
+        response.setStatusCode(statusCode) //
+                .putHeader(HttpHeaders.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON) //
+                .end(body);
+    }
+
+    JsonResponseWriter field(byte[] name, String value) {
+
+        if (!firstField) {
+            buffer.appendByte((byte) ',');
+        }
+        firstField = false;
+
+        buffer.appendBytes(name);
+        if (value == null) {
+            buffer.appendBytes(NULL);
+        } else {
+            string(value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Appends a string field whose value is already UTF-8 encoded and needs no escaping, like a cached timestamp.
+     */
+    JsonResponseWriter field(byte[] name, byte[] value) {
+
+        if (!firstField) {
+            buffer.appendByte((byte) ',');
+        }
+        firstField = false;
+
+        buffer.appendBytes(name).appendByte((byte) '"').appendBytes(value).appendByte((byte) '"');
+
+        return this;
+    }
+
+    Buffer end() {
+        return buffer.appendByte((byte) '}');
+    }
+
+    private void string(String value) {
+
+        buffer.appendByte((byte) '"');
+
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer.appendByte((byte) '\\').appendByte((byte) c);
+            } else if (c < 0x20) {
+                buffer.appendByte((byte) '\\').appendByte((byte) 'u').appendByte((byte) '0').appendByte((byte) '0')
+                        .appendByte(HEX[c >> 4]).appendByte(HEX[c & 0xF]);
+            } else if (c < 0x80) {
+                buffer.appendByte((byte) c);
+            } else if (c < 0x800) {
+                buffer.appendByte((byte) (0xC0 | (c >> 6))).appendByte((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                var cp = Character.toCodePoint(c, value.charAt(++i));
+                buffer.appendByte((byte) (0xF0 | (cp >> 18))).appendByte((byte) (0x80 | ((cp >> 12) & 0x3F)))
+                        .appendByte((byte) (0x80 | ((cp >> 6) & 0x3F))).appendByte((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                buffer.appendByte((byte) (0xE0 | (c >> 12))).appendByte((byte) (0x80 | ((c >> 6) & 0x3F)))
+                        .appendByte((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+
+        buffer.appendByte((byte) '"');
+    }
+}
@@ -0,0 +1,244 @@
+package demo;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.auth.JWTOptions;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.codec.BodyCodec;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Keeps the JSON Web Key Set of the issuer up to date and routes token validation to a {@link JWTAuth} built from the
+ * current keys.
+ * <p>
+ * Keys are refreshed periodically. A token with an unknown {@code kid} triggers a single, rate-limited refetch before
+ * validation, so a key rotation in Keycloak is picked up without a restart. New keys are swapped in atomically.
+ */
+class JwksManager implements JWTAuth {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JwksManager.class);
+
+    private final Vertx vertx;
+
+    private final WebClient webClient;
+
+    private final URI jwksUri;
+
+    private final Function<List<JsonObject>, JWTAuth> authFactory;
+
+    private final long refreshIntervalMillis;
+
+    private final long minRefetchIntervalMillis;
+
+    private final long fetchTimeoutMillis;
+
+    private volatile KeySet keySet = KeySet.EMPTY;
+
+    private Future<Void> inflightFetch;
+
+    private long lastFetchAt;
+
+    private long refreshTimerId = -1;
+
+    JwksManager(Vertx vertx, WebClient webClient, URI jwksUri, Function<List<JsonObject>, JWTAuth> authFactory,
+                long refreshIntervalMillis, long minRefetchIntervalMillis, long fetchTimeoutMillis) {
+        this.vertx = vertx;
+        this.webClient = webClient;
+        this.jwksUri = jwksUri;
+        this.authFactory = authFactory;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.minRefetchIntervalMillis = minRefetchIntervalMillis;
+        this.fetchTimeoutMillis = fetchTimeoutMillis;
+    }
+
+    /**
+     * Fetches the initial key set and schedules the periodic refresh. A failed fetch is retried up to
+     * {@code maxAttempts} times in total with exponential backoff starting at {@code backoffMillis}.
+     */
+    Future<Void> start(int maxAttempts, long backoffMillis) {
+        return fetchWithRetries(1, maxAttempts, backoffMillis)
+                .onSuccess(v -> refreshTimerId = vertx.setPeriodic(refreshIntervalMillis, id -> refresh()));
+    }
+
+    private Future<Void> fetchWithRetries(int attempt, int maxAttempts, long backoffMillis) {
+
+        var promise = Promise.<Void>promise();
+
+        fetch().onComplete(ar -> {
+
+            if (ar.succeeded() || attempt >= maxAttempts) {
+                promise.handle(ar);
+                return;
+            }
+
+            LOG.warn("JWKS fetch attempt " + attempt + "/" + maxAttempts + " failed, retrying in " + backoffMillis + "ms: "
+                    + ar.cause().getMessage());
+            vertx.setTimer(backoffMillis, id -> fetchWithRetries(attempt + 1, maxAttempts, backoffMillis * 2).onComplete(promise));
+        });
+
+        return promise.future();
+    }
+
+    /**
+     * Stops the periodic refresh, tokens are still validated against the last known keys.
+     */
+    void stop() {
+        if (refreshTimerId != -1) {
+            vertx.cancelTimer(refreshTimerId);
+            refreshTimerId = -1;
+        }
+    }
+
+    @Override
+    public void authenticate(JsonObject authInfo, Handler<AsyncResult<User>> resultHandler) {
+
+        var kid = extractKid(authInfo.getString("jwt"));
+        if (kid == null || keySet.keysByKid.containsKey(kid)) {
+            keySet.auth.authenticate(authInfo, resultHandler);
+            return;
+        }
+
+        LOG.info("Unknown key id " + kid + ", refetching JWKS");
+
+        // validate against whatever keys we have after the refetch, an unknown kid is rejected by the delegate
+        refetch().onComplete(ar -> keySet.auth.authenticate(authInfo, resultHandler));
+    }
+
+    @Override
+    public String generateToken(JsonObject claims, JWTOptions options) {
+        return keySet.auth.generateToken(claims, options);
+    }
+
+    private void refresh() {
+        if (inflightFetch == null) {
+            fetch().onFailure(t -> LOG.warn("Periodic JWKS refresh failed: " + t.getMessage()));
+        }
+    }
+
+    private Future<Void> refetch() {
+
+        if (inflightFetch != null) {
+            return inflightFetch;
+        }
+
+        if (System.currentTimeMillis() - lastFetchAt < minRefetchIntervalMillis) {
+            return Future.succeededFuture();
+        }
+
+        return fetch();
+    }
+
+    private Future<Void> fetch() {
+
+        lastFetchAt = System.currentTimeMillis();
+
+        var promise = Promise.<Void>promise();
+        inflightFetch = promise.future();
+
+        webClient.getAbs(jwksUri.toString())
+                .timeout(fetchTimeoutMillis)
+                .as(BodyCodec.jsonObject())
+                .send(ar -> {
+
+                    if (!ar.succeeded() || ar.result().statusCode() != 200 || ar.result().body() == null) {
+                        complete(promise, Future.failedFuture(String.format("Could not fetch JWKS from URI: %s", jwksUri)));
+                        return;
+                    }
+
+                    // a throw in here would leave the fetch in flight forever
+                    var keys = ar.result().body().getValue("keys");
+                    if (!(keys instanceof JsonArray)) {
+                        complete(promise, Future.failedFuture(String.format("JWKS from URI %s has no keys", jwksUri)));
+                        return;
+                    }
+
+                    var jwks = new ArrayList<JsonObject>(((JsonArray) keys).size());
+                    var keysByKid = new HashMap<String, JsonObject>();
+                    for (var key : (JsonArray) keys) {
+
+                        var kid = key instanceof JsonObject ? ((JsonObject) key).getValue("kid") : null;
+                        if (!(key instanceof JsonObject) || kid != null && !(kid instanceof String)) {
+                            complete(promise, Future.failedFuture(String.format("JWKS from URI %s has a malformed key: %s", jwksUri, key)));
+                            return;
+                        }
+
+                        var jwk = (JsonObject) key;
+                        jwks.add(jwk);
+                        keysByKid.put((String) kid, jwk);
+                    }
+
+                    // key parsing is CPU heavy, keep it off the event loop
+                    vertx.<JWTAuth>executeBlocking(p -> p.complete(authFactory.apply(jwks)), false, authResult -> {
+
+                        if (authResult.failed()) {
+                            complete(promise, Future.failedFuture(authResult.cause()));
+                            return;
+                        }
+
+                        keySet = new KeySet(Collections.unmodifiableMap(keysByKid), authResult.result());
+                        LOG.info("Loaded JWKS with key ids " + keysByKid.keySet());
+
+                        complete(promise, Future.succeededFuture());
+                    });
+                });
+
+        return promise.future();
+    }
+
+    private void complete(Promise<Void> promise, AsyncResult<Void> result) {
+        inflightFetch = null;
+        promise.handle(result);
+    }
+
+    private static String extractKid(String token) {
+
+        if (token == null) {
+            return null;
+        }
+
+        var headerEnd = token.indexOf('.');
+        if (headerEnd < 0) {
+            return null;
+        }
+
+        try {
+            var header = Base64.getUrlDecoder().decode(token.substring(0, headerEnd));
+            return new JsonObject(new String(header, StandardCharsets.UTF_8)).getString("kid");
+        } catch (RuntimeException e) {
+            // malformed tokens are rejected by the delegate
+            return null;
+        }
+    }
+
+    private static class KeySet {
+
+        private static final KeySet EMPTY = new KeySet(Map.of(), null);
+
+        private final Map<String, JsonObject> keysByKid;
+
+        private final JWTAuth auth;
+
+        KeySet(Map<String, JsonObject> keysByKid, JWTAuth auth) {
+            this.keysByKid = keysByKid;
+            this.auth = auth;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package demo;
+
+import demo.common.ConfigReader;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable settings of the {@code jwt} config subtree.
+ */
+final class JwtConfig {
+
+    private final String issuer;
+
+    private final URI jwksUri;
+
+    private final String permissionsClaimKey;
+
+    private final int cacheMaxEntries;
+
+    private final long jwksRefreshIntervalMillis;
+
+    private final long jwksMinRefetchIntervalMillis;
+
+    private final long jwksFetchTimeoutMillis;
+
+    private final int jwksStartupAttempts;
+
+    private final long jwksRetryBackoffMillis;
+
+    private final List<String> roles;
+
+    private JwtConfig(String issuer, URI jwksUri, String permissionsClaimKey, int cacheMaxEntries,
+                      long jwksRefreshIntervalMillis, long jwksMinRefetchIntervalMillis, long jwksFetchTimeoutMillis,
+                      int jwksStartupAttempts, long jwksRetryBackoffMillis, List<String> roles) {
+        this.issuer = issuer;
+        this.jwksUri = jwksUri;
+        this.permissionsClaimKey = permissionsClaimKey;
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.jwksRefreshIntervalMillis = jwksRefreshIntervalMillis;
+        this.jwksMinRefetchIntervalMillis = jwksMinRefetchIntervalMillis;
+        this.jwksFetchTimeoutMillis = jwksFetchTimeoutMillis;
+        this.jwksStartupAttempts = jwksStartupAttempts;
+        this.jwksRetryBackoffMillis = jwksRetryBackoffMillis;
+        this.roles = roles;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a value is invalid
+     */
+    static JwtConfig from(ConfigReader jwt) {
+
+        var issuer = jwt.requiredString("issuer");
+        uri(jwt, "issuer", issuer);
+
+        // derive JWKS uri from Keycloak issuer URI
+        var jwksUri = uri(jwt, "jwksUri", jwt.string("jwksUri", issuer + "/protocol/openid-connect/certs"));
+
+        var jwks = jwt.object("jwks");
+        var roles = jwt.strings("roles", List.of("user", "admin"));
+        if (roles.size() > RoleRegistry.MAX_ROLES) {
+            throw jwt.invalid("roles", roles, "at most " + RoleRegistry.MAX_ROLES + " roles are supported");
+        }
+
+        return new JwtConfig(
+                issuer,
+                jwksUri,
+                jwt.string("permissionClaimsKey", "realm_access/roles"),
+                jwt.object("cache").integer("maxEntries", 10000, 1, Integer.MAX_VALUE),
+                jwks.longValue("refreshIntervalMillis", 300_000L, 1),
+                jwks.longValue("minRefetchIntervalMillis", 10_000L, 0),
+                jwks.longValue("fetchTimeoutMillis", 5_000L, 1),
+                jwks.integer("startupAttempts", 5, 1, 100),
+                jwks.longValue("retryBackoffMillis", 500L, 1),
+                roles);
+    }
+
+    private static URI uri(ConfigReader jwt, String key, String value) {
+
+        URI uri;
+        try {
+            uri = URI.create(value);
+        } catch (IllegalArgumentException e) {
+            throw jwt.invalid(key, value, e.getMessage());
+        }
+
+        if (!"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme()) || uri.getHost() == null) {
+            throw jwt.invalid(key, value, "must be an absolute http(s) URI");
+        }
+
+        return uri;
+    }
+
+    String issuer() {
+        return issuer;
+    }
+
+    URI jwksUri() {
+        return jwksUri;
+    }
+
+    String permissionsClaimKey() {
+        return permissionsClaimKey;
+    }
+
+    int cacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    long jwksRefreshIntervalMillis() {
+        return jwksRefreshIntervalMillis;
+    }
+
+    long jwksMinRefetchIntervalMillis() {
+        return jwksMinRefetchIntervalMillis;
+    }
+
+    long jwksFetchTimeoutMillis() {
+        return jwksFetchTimeoutMillis;
+    }
+
+    int jwksStartupAttempts() {
+        return jwksStartupAttempts;
+    }
+
+    long jwksRetryBackoffMillis() {
+        return jwksRetryBackoffMillis;
+    }
+
+    List<String> roles() {
+        return roles;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof JwtConfig)) {
+            return false;
+        }
+
+        var that = (JwtConfig) o;
+        return cacheMaxEntries == that.cacheMaxEntries
+                && jwksRefreshIntervalMillis == that.jwksRefreshIntervalMillis
+                && jwksMinRefetchIntervalMillis == that.jwksMinRefetchIntervalMillis
+                && jwksFetchTimeoutMillis == that.jwksFetchTimeoutMillis
+                && jwksStartupAttempts == that.jwksStartupAttempts
+                && jwksRetryBackoffMillis == that.jwksRetryBackoffMillis
+                && issuer.equals(that.issuer)
+                && jwksUri.equals(that.jwksUri)
+                && permissionsClaimKey.equals(that.permissionsClaimKey)
+                && roles.equals(that.roles);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(issuer, jwksUri, permissionsClaimKey, cacheMaxEntries, jwksRefreshIntervalMillis,
+                jwksMinRefetchIntervalMillis, jwksFetchTimeoutMillis, jwksStartupAttempts, jwksRetryBackoffMillis, roles);
+    }
+}
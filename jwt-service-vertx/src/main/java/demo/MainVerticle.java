@@ -1,68 +1,116 @@
 package demo;
 
-import io.netty.handler.codec.http.HttpHeaderValues;
+import demo.common.CoarseClock;
+import demo.common.HttpServers;
+import demo.common.ReloadableHttpServer;
+import demo.metrics.MetricsRoutes;
+import io.vertx.config.ConfigChange;
 import io.vertx.config.ConfigRetriever;
 import io.vertx.config.ConfigRetrieverOptions;
 import io.vertx.config.ConfigStoreOptions;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.Promise;
 import io.vertx.core.http.HttpHeaders;
-import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.auth.JWTOptions;
 import io.vertx.ext.auth.jwt.JWTAuth;
 import io.vertx.ext.auth.jwt.JWTAuthOptions;
 import io.vertx.ext.auth.jwt.impl.JWTUser;
-import io.vertx.ext.jwt.JWTOptions;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.ext.web.codec.BodyCodec;
 import io.vertx.ext.web.handler.JWTAuthHandler;
 
-import java.net.URI;
-import java.time.Instant;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.ToLongFunction;
 
 public class MainVerticle extends AbstractVerticle {
 
     private static final Logger LOG = LoggerFactory.getLogger(MainVerticle.class);
 
+    // pre-encoded JSON field names for user data responses
+    private static final byte[] TYPE = JsonResponseWriter.name("type");
+    private static final byte[] USERNAME = JsonResponseWriter.name("username");
+    private static final byte[] USER_ID = JsonResponseWriter.name("userId");
+    private static final byte[] TIMESTAMP = JsonResponseWriter.name("timestamp");
+
     private WebClient webClient;
 
-    private JWTAuth jwtAuth;
+    private ConfigRetriever configRetriever;
+
+    private volatile ServiceConfig config;
+
+    private volatile Security security;
 
     private Router router;
 
-    static class Startup {
+    private ReloadableHttpServer server;
+
+    private CoarseClock clock;
+
+    /**
+     * Token validation and role checks built from the {@code jwt} config, replaced as a whole on reload.
+     */
+    static class Security {
+
+        private final JwksManager jwksManager;
+
+        private final CachingJWTAuth jwtAuth;
 
-        private final Promise<Void> bootstrap;
+        private final Handler<RoutingContext> authHandler;
 
-        private final JsonObject config;
+        private final Handler<RoutingContext> requireUser;
 
-        public Startup(Promise<Void> bootstrap, JsonObject config) {
-            this.bootstrap = bootstrap;
-            this.config = config;
+        private final Handler<RoutingContext> requireAdmin;
+
+        Security(JwksManager jwksManager, CachingJWTAuth jwtAuth, RoleRegistry roleRegistry) {
+            this.jwksManager = jwksManager;
+            this.jwtAuth = jwtAuth;
+            this.authHandler = JWTAuthHandler.create(jwtAuth);
+            this.requireUser = RoleHandler.requireRole(roleRegistry, "user");
+            this.requireAdmin = RoleHandler.requireRole(roleRegistry, "admin");
         }
     }
 
     @Override
     public void start(Promise<Void> bootstrap) {
 
-        initConfig(bootstrap)
-                .compose(this::setupWebClient)
-                .compose(this::setupJwtAuth)
-                .compose(this::setupRouter)
-                .compose(this::setupRoutes)
-                .compose(this::startServer)
-                .onComplete(bootstrap);
+        clock = CoarseClock.get(vertx);
+
+        // independent phases run concurrently, the verticle is only reported as started once all of them completed
+        var phases = new StartupPhases();
+
+        var serviceConfig = phases.run("config", this::initConfig);
+        var routes = phases.run("router", this::setupRouter);
+        var webClient = phases.run("webClient", this::setupWebClient);
+
+        var jwtAuth = CompositeFuture.all(serviceConfig, webClient)
+                .compose(v -> phases.run("jwks", () -> setupJwtAuth(serviceConfig.result())));
+        var listen = CompositeFuture.all(serviceConfig, routes)
+                .compose(v -> phases.run("listen", () -> startServer(serviceConfig.result())));
+
+        CompositeFuture.all(jwtAuth, listen).onComplete(ar -> {
+
+            if (ar.failed()) {
+                LOG.error("Vertx JWT-Service failed to start after " + phases.summary(), ar.cause());
+                if (server != null) {
+                    server.close();
+                }
+                bootstrap.fail(ar.cause());
+                return;
+            }
+
+            LOG.info("Vertx JWT-Service started on port " + server.actualPort() + " after " + phases.summary());
+            configRetriever.listen(this::onConfigChange);
+            bootstrap.complete();
+        });
     }
 
-    private Future<Startup> initConfig(Promise<Void> bootstrap) {
+    private Future<ServiceConfig> initConfig() {
 
         // load configuration from config.yaml file
         var yamlConfigOpts = new ConfigStoreOptions() //
@@ -70,102 +118,140 @@ public class MainVerticle extends AbstractVerticle {
                 .setType("file") //
                 .setConfig(new JsonObject().put("path", "config.yaml"));
 
+        // check config.yaml for changes periodically
         var configRetrieverOpts = new ConfigRetrieverOptions() //
+                .setScanPeriod(Long.getLong("config.scanPeriod", 2000L)) //
                 .addStore(yamlConfigOpts);
 
-        var configRetriever = ConfigRetriever.create(vertx, configRetrieverOpts);
+        configRetriever = ConfigRetriever.create(vertx, configRetrieverOpts);
 
+        // fail fast on invalid values
         return Future.future(configRetriever::getConfig)
-                .map(config -> new Startup(bootstrap, config));
+                .map(json -> config = ServiceConfig.from(json));
     }
 
-    private Future<Startup> setupWebClient(Startup startup) {
+    private Future<Void> setupWebClient() {
 
         webClient = WebClient.create(vertx);
 
-        return Future.succeededFuture(startup);
+        return Future.succeededFuture();
     }
 
-    private Future<Startup> setupJwtAuth(Startup startup) {
+    private Future<Void> setupJwtAuth(ServiceConfig serviceConfig) {
+        return createSecurity(serviceConfig.jwt()).map(created -> {
+            security = created;
+            return null;
+        });
+    }
 
-        var jwtConfig = startup.config.getJsonObject("jwt");
-        var issuer = jwtConfig.getString("issuer");
-        var issuerUri = URI.create(issuer);
+    private Future<Security> createSecurity(JwtConfig jwtConfig) {
 
-        // derive JWKS uri from Keycloak issuer URI
-        var jwksUri = URI.create(jwtConfig.getString("jwksUri", String.format("%s://%s:%d%s",
-                issuerUri.getScheme(), issuerUri.getHost(), issuerUri.getPort(), issuerUri.getPath() + "/protocol/openid-connect/certs")));
+        // Configure JWT validation options
+        var jwtOptions = new JWTOptions();
+        jwtOptions.setIssuer(jwtConfig.issuer());
 
-        var promise = Promise.<JWTAuth>promise();
+        // keep JWKS from `/certs` endpoint up to date to follow key rotations
+        var jwksManager = new JwksManager(vertx, webClient, jwtConfig.jwksUri(), jwks -> {
 
-        // fetch JWKS from `/certs` endpoint
-        webClient.get(jwksUri.getPort(), jwksUri.getHost(), jwksUri.getPath())
-                .as(BodyCodec.jsonObject())
-                .send(ar -> {
+            // configure JWTAuth
+            var jwtAuthOptions = new JWTAuthOptions();
+            jwtAuthOptions.setJwks(jwks);
+            jwtAuthOptions.setJWTOptions(jwtOptions);
+            jwtAuthOptions.setPermissionsClaimKey(jwtConfig.permissionsClaimKey());
 
-                    if (!ar.succeeded()) {
-                        startup.bootstrap.fail(String.format("Could not fetch JWKS from URI: %s", jwksUri));
-                        return;
-                    }
+            return JWTAuth.create(vertx, jwtAuthOptions);
+        }, jwtConfig.jwksRefreshIntervalMillis(), jwtConfig.jwksMinRefetchIntervalMillis(), jwtConfig.jwksFetchTimeoutMillis());
 
-                    var response = ar.result();
+        // realm roles are resolved once per token into a compact bitset
+        var roleRegistry = new RoleRegistry(jwtConfig.roles(), jwtConfig.permissionsClaimKey());
 
-                    var jwksResponse = response.body();
-                    var keys = jwksResponse.getJsonArray("keys");
+        return jwksManager.start(jwtConfig.jwksStartupAttempts(), jwtConfig.jwksRetryBackoffMillis()).map(v -> {
 
-                    // Configure JWT validation options
-                    var jwtOptions = new JWTOptions();
-                    jwtOptions.setIssuer(issuer);
+            // remember verified tokens to avoid repeated signature checks
+            var jwtAuth = new CachingJWTAuth(jwksManager, roleRegistry, jwtConfig.cacheMaxEntries());
 
-                    // extract JWKS from keys array
-                    var jwks = ((List<Object>) keys.getList()).stream()
-                            .map(o -> new JsonObject((Map<String, Object>) o))
-                            .collect(Collectors.toList());
+            return new Security(jwksManager, jwtAuth, roleRegistry);
+        });
+    }
+
+    private Future<Void> setupRouter() {
+
+        router = Router.router(vertx);
+        var metrics = MetricsRoutes.install(vertx, router);
+
+        // statistics of the token cache of the current jwt config, a reload starts with an empty cache
+        metrics.counter("jwt_cache_hits_total", "Tokens verified from the cache", () -> tokenCache(CachingJWTAuth::hits));
+        metrics.counter("jwt_cache_misses_total", "Tokens verified by signature", () -> tokenCache(CachingJWTAuth::misses));
+        metrics.counter("jwt_cache_evictions_total", "Verified tokens evicted from the full cache", () -> tokenCache(CachingJWTAuth::evictions));
+        metrics.gauge("jwt_cache_entries", "Verified tokens in the cache", () -> tokenCache(CachingJWTAuth::size));
 
-                    // configure JWTAuth
-                    var jwtAuthOptions = new JWTAuthOptions();
-                    jwtAuthOptions.setJwks(jwks);
-                    jwtAuthOptions.setJWTOptions(jwtOptions);
-                    jwtAuthOptions.setPermissionsClaimKey(jwtConfig.getString("permissionClaimsKey", "realm_access/roles"));
+        // handlers are looked up per request, so a reloaded jwt config applies to the next request
+        router.route("/api/*").handler(ctx -> {
 
-                    JWTAuth jwtAuth = JWTAuth.create(vertx, jwtAuthOptions);
-                    promise.complete(jwtAuth);
-                });
+            var current = security;
+            if (current == null) {
+                // the port is bound while the JWKS is still being fetched
+                ctx.response().setStatusCode(503).putHeader(HttpHeaders.RETRY_AFTER, "1").end();
+                return;
+            }
 
-        return promise.future().compose(auth -> {
-            jwtAuth = auth;
-            return Future.succeededFuture(startup);
+            current.authHandler.handle(ctx);
         });
+
+        router.get("/api/greet").handler(this::handleGreet);
+        router.get("/api/user").handler(ctx -> security.requireUser.handle(ctx)).handler(this::handleUserData);
+        router.get("/api/admin").handler(ctx -> security.requireAdmin.handle(ctx)).handler(this::handleAdminData);
+
+        return Future.succeededFuture();
     }
 
-    private Future<Startup> setupRouter(Startup startup) {
+    private long tokenCache(ToLongFunction<CachingJWTAuth> statistic) {
+        var current = security;
+        return current == null ? 0 : statistic.applyAsLong(current.jwtAuth);
+    }
 
-        router = Router.router(vertx);
+    private Future<Void> startServer(ServiceConfig serviceConfig) {
 
-        router.route("/api/*").handler(JWTAuthHandler.create(jwtAuth));
+        server = new ReloadableHttpServer(vertx, router, Long.getLong("http.drainMillis", 30_000L));
 
-        return Future.succeededFuture(startup);
+        return server.listen(HttpServers.options(vertx, serviceConfig.http())).mapEmpty();
     }
 
-    private Future<Startup> setupRoutes(Startup startup) {
+    private void onConfigChange(ConfigChange change) {
 
-        router.get("/api/greet").handler(this::handleGreet);
-        router.get("/api/user").handler(this::handleUserData);
-        router.get("/api/admin").handler(this::handleAdminData);
+        ServiceConfig changed;
+        try {
+            changed = ServiceConfig.from(change.getNewConfiguration());
+        } catch (IllegalArgumentException e) {
+            LOG.error("Ignoring invalid configuration change: " + e.getMessage());
+            return;
+        }
 
-        return Future.succeededFuture(startup);
-    }
+        var previous = config;
+        config = changed;
 
-    private Future<Void> startServer(Startup startup) {
+        if (!changed.jwt().equals(previous.jwt())) {
 
-        var httpConfig = startup.config.getJsonObject("http");
+            LOG.info("jwt configuration changed");
+            createSecurity(changed.jwt()).onComplete(ar -> {
 
-        var port = httpConfig.getInteger("port", 3000);
-        vertx.createHttpServer().requestHandler(router).listen(port);
+                if (ar.failed()) {
+                    LOG.error("Could not apply changed jwt configuration, keeping the current one", ar.cause());
+                    return;
+                }
 
-        LOG.info("Vertx JWT-Service started!");
+                var current = security;
+                security = ar.result();
+                current.jwksManager.stop();
+            });
+        }
 
-        return Future.succeededFuture();
+        if (!changed.http().equals(previous.http())) {
+
+            LOG.info("http configuration changed");
+            server.listen(HttpServers.options(vertx, changed.http()))
+                    .onFailure(t -> LOG.error("Could not apply changed http configuration", t));
+        }
     }
 
     private void handleGreet(RoutingContext ctx) {
@@ -177,7 +263,7 @@ public class MainVerticle extends AbstractVerticle {
         var accessToken = ctx.request().getHeader(HttpHeaders.AUTHORIZATION).substring("Bearer ".length());
         // Use accessToken for down-stream calls...
 
-        ctx.request().response().end(String.format("Hi %s (%s) %s%n", username, userId, Instant.now()));
+        ctx.request().response().end(String.format("Hi %s (%s) %s%n", username, userId, clock.iso()));
     }
 
     private void handleUserData(RoutingContext ctx) {
@@ -186,21 +272,14 @@ public class MainVerticle extends AbstractVerticle {
         var username = jwtUser.principal().getString("preferred_username");
         var userId = jwtUser.principal().getString("sub");
 
-        jwtUser.isAuthorized("user", res -> {
+        var data = JsonResponseWriter.object(160)
+                .field(TYPE, "user")
+                .field(USERNAME, username)
+                .field(USER_ID, userId)
+                .field(TIMESTAMP, clock.isoBytes())
+                .end();
 
-            if (!res.succeeded() || !res.result()) {
-                toJsonResponse(ctx).setStatusCode(403).end("{\"error\": \"forbidden\"}");
-                return;
-            }
-
-            JsonObject data = new JsonObject()
-                    .put("type", "user")
-                    .put("username", username)
-                    .put("userId", userId)
-                    .put("timestamp", Instant.now());
-
-            toJsonResponse(ctx).end(data.toString());
-        });
+        JsonResponseWriter.send(ctx.response(), 200, data);
     }
 
     private void handleAdminData(RoutingContext ctx) {
@@ -209,25 +288,13 @@ public class MainVerticle extends AbstractVerticle {
         var username = jwtUser.principal().getString("preferred_username");
         var userId = jwtUser.principal().getString("sub");
 
-        jwtUser.isAuthorized("admin", res -> {
-
-            if (!res.succeeded() || !res.result()) {
-                toJsonResponse(ctx).setStatusCode(403).end("{\"error\": \"forbidden\"}");
-                return;
-            }
-
-            JsonObject data = new JsonObject()
-                    .put("type", "admin")
-                    .put("username", username)
-                    .put("userId", userId)
-                    .put("timestamp", Instant.now());
-
-            toJsonResponse(ctx).end(data.toString());
-        });
-    }
-
+        var data = JsonResponseWriter.object(160)
+                .field(TYPE, "admin")
+                .field(USERNAME, username)
+                .field(USER_ID, userId)
+                .field(TIMESTAMP, clock.isoBytes())
+                .end();
 
-    private HttpServerResponse toJsonResponse(RoutingContext ctx) {
-        return ctx.request().response().putHeader(HttpHeaders.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+        JsonResponseWriter.send(ctx.response(), 200, data);
     }
 }
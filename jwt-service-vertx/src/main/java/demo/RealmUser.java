@@ -0,0 +1,39 @@
+package demo;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.jwt.impl.JWTUser;
+
+/**
+ * {@link JWTUser} with the realm roles of the token resolved once at authentication time.
+ */
+class RealmUser extends JWTUser {
+
+    private final RoleRegistry roleRegistry;
+
+    private final RoleSet roles;
+
+    RealmUser(JsonObject principal, String permissionsClaimKey, RoleRegistry roleRegistry, RoleSet roles) {
+        super(principal, permissionsClaimKey);
+        this.roleRegistry = roleRegistry;
+        this.roles = roles;
+    }
+
+    boolean hasRole(int roleIndex) {
+        return roles.contains(roleIndex);
+    }
+
+    @Override
+    public void doIsPermitted(String permission, Handler<AsyncResult<Boolean>> handler) {
+
+        var index = roleRegistry.indexOf(permission);
+        if (index < 0) {
+            super.doIsPermitted(permission, handler);
+            return;
+        }
+
+        handler.handle(Future.succeededFuture(roles.contains(index)));
+    }
+}
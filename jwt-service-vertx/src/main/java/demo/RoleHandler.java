@@ -0,0 +1,38 @@
+package demo;
+
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Route handler that synchronously checks the precomputed roles of the current {@link RealmUser}.
+ */
+class RoleHandler implements Handler<RoutingContext> {
+
+    private final int roleIndex;
+
+    private RoleHandler(int roleIndex) {
+        this.roleIndex = roleIndex;
+    }
+
+    static RoleHandler requireRole(RoleRegistry roleRegistry, String role) {
+
+        var roleIndex = roleRegistry.indexOf(role);
+        if (roleIndex < 0) {
+            throw new IllegalArgumentException("Unknown role: " + role);
+        }
+
+        return new RoleHandler(roleIndex);
+    }
+
+    @Override
+    public void handle(RoutingContext ctx) {
+
+        var user = ctx.user();
+        if (user instanceof RealmUser && ((RealmUser) user).hasRole(roleIndex)) {
+            ctx.next();
+            return;
+        }
+
+        JsonResponseWriter.send(ctx.response(), 403, JsonResponseWriter.FORBIDDEN);
+    }
+}
@@ -0,0 +1,77 @@
+package demo;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns a fixed index to each known role name and resolves the roles claim of a token into a {@link RoleSet}.
+ */
+class RoleRegistry {
+
+    static final int MAX_ROLES = Long.SIZE;
+
+    private final Map<String, Integer> indexByRole = new HashMap<>();
+
+    private final String permissionsClaimKey;
+
+    private final String[] claimPath;
+
+    RoleRegistry(List<String> roles, String permissionsClaimKey) {
+
+        if (roles.size() > MAX_ROLES) {
+            throw new IllegalArgumentException("At most " + MAX_ROLES + " roles are supported, got " + roles.size());
+        }
+
+        for (var role : roles) {
+            indexByRole.putIfAbsent(role, indexByRole.size());
+        }
+
+        this.permissionsClaimKey = permissionsClaimKey;
+        this.claimPath = permissionsClaimKey.split("/");
+    }
+
+    /**
+     * @return the index of the given role or {@code -1} if the role is unknown
+     */
+    int indexOf(String role) {
+        return indexByRole.getOrDefault(role, -1);
+    }
+
+    /**
+     * Creates a user with the roles of the given token principal resolved once.
+     */
+    RealmUser createUser(JsonObject principal) {
+        return new RealmUser(principal, permissionsClaimKey, this, resolve(principal));
+    }
+
+    private RoleSet resolve(JsonObject principal) {
+
+        var node = principal;
+        for (var i = 0; i < claimPath.length - 1 && node != null; i++) {
+            node = node.getJsonObject(claimPath[i]);
+        }
+
+        if (node == null) {
+            return RoleSet.EMPTY;
+        }
+
+        JsonArray roles = node.getJsonArray(claimPath[claimPath.length - 1]);
+        if (roles == null) {
+            return RoleSet.EMPTY;
+        }
+
+        var bits = 0L;
+        for (var role : roles) {
+            var index = role instanceof String ? indexOf((String) role) : -1;
+            if (index >= 0) {
+                bits |= 1L << index;
+            }
+        }
+
+        return bits == 0L ? RoleSet.EMPTY : new RoleSet(bits);
+    }
+}
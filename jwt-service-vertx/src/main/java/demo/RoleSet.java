@@ -0,0 +1,24 @@
+package demo;
+
+/**
+ * Immutable set of roles, represented as a bitset over the role names known to a {@link RoleRegistry}.
+ */
+final class RoleSet {
+
+    static final RoleSet EMPTY = new RoleSet(0L);
+
+    private final long bits;
+
+    RoleSet(long bits) {
+        this.bits = bits;
+    }
+
+    boolean contains(int roleIndex) {
+        return (bits & (1L << roleIndex)) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "RoleSet{" + Long.toBinaryString(bits) + "}";
+    }
+}
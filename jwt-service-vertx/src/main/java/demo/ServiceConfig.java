@@ -0,0 +1,35 @@
+package demo;
+
+import demo.common.ConfigReader;
+import demo.common.HttpConfig;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Immutable, validated snapshot of {@code config.yaml}, a reload publishes a new snapshot.
+ */
+final class ServiceConfig {
+
+    private final HttpConfig http;
+
+    private final JwtConfig jwt;
+
+    private ServiceConfig(HttpConfig http, JwtConfig jwt) {
+        this.http = http;
+        this.jwt = jwt;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a value is invalid
+     */
+    static ServiceConfig from(JsonObject config) {
+        return new ServiceConfig(HttpConfig.from(config, 3000), JwtConfig.from(ConfigReader.of(config).object("jwt")));
+    }
+
+    HttpConfig http() {
+        return http;
+    }
+
+    JwtConfig jwt() {
+        return jwt;
+    }
+}
@@ -0,0 +1,56 @@
+package demo;
+
+import io.vertx.core.Future;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Records the duration of the asynchronous phases of the verticle startup. Must be used from a single event loop.
+ */
+class StartupPhases {
+
+    private final long startedAt = System.nanoTime();
+
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+
+    /**
+     * Starts the given phase now and records its duration once the returned future completes.
+     */
+    <T> Future<T> run(String name, Supplier<Future<T>> phase) {
+
+        var phaseStartedAt = System.nanoTime();
+
+        Future<T> result;
+        try {
+            result = phase.get();
+        } catch (RuntimeException e) {
+            result = Future.failedFuture(e);
+        }
+
+        return result.onComplete(ar -> record(name, phaseStartedAt));
+    }
+
+    private void record(String name, long phaseStartedAt) {
+        durations.put(name, (System.nanoTime() - phaseStartedAt) / 1_000_000);
+    }
+
+    /**
+     * @return e.g. {@code total=412ms [config=35ms, router=1ms, jwks=398ms, listen=12ms]}
+     */
+    String summary() {
+
+        var summary = new StringBuilder("total=").append((System.nanoTime() - startedAt) / 1_000_000).append("ms [");
+        var first = true;
+        for (var duration : durations.entrySet()) {
+            if (!first) {
+                summary.append(", ");
+            }
+            summary.append(duration.getKey()).append('=').append(duration.getValue()).append("ms");
+            first = false;
+        }
+
+        return summary.append(']').toString();
+    }
+}
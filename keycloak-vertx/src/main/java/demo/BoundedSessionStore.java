@@ -0,0 +1,349 @@
+package demo;
+
+import demo.metrics.Metrics;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.impl.ClusterSerializable;
+import io.vertx.ext.auth.PRNG;
+import io.vertx.ext.web.Session;
+import io.vertx.ext.web.sstore.AbstractSession;
+import io.vertx.ext.web.sstore.SessionStore;
+import io.vertx.ext.web.sstore.impl.SharedDataSessionImpl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local {@link SessionStore} with a hard limit on the number of sessions and their estimated size.
+ * <p>
+ * Sessions are kept in sharded {@link ConcurrentHashMap}s. Sessions expire after being idle for their timeout or after
+ * an absolute lifetime. When a limit is exceeded, the least recently accessed session out of a small random sample is
+ * evicted, which approximates LRU without a global lock.
+ * <p>
+ * The number and estimated size of the sessions, evictions and expirations are exported as {@link Metrics}.
+ * <p>
+ * Supported options: {@code maxSessions}, {@code maxBytes}, {@code maxLifetime} (ms), {@code reaperInterval} (ms).
+ */
+public class BoundedSessionStore implements SessionStore {
+
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+
+    /**
+     * Rough size of a session without serializable data, used if a session cannot be serialized.
+     */
+    private static final int DEFAULT_SESSION_BYTES = 512;
+
+    /**
+     * Length of generated session ids, the default of vertx-web.
+     */
+    private static final int DEFAULT_SESSION_ID_LENGTH = 16;
+
+    private Vertx vertx;
+
+    private PRNG random;
+
+    private ConcurrentHashMap<String, Entry>[] shards;
+
+    private int maxSessions;
+
+    private long maxBytes;
+
+    private long maxLifetime;
+
+    private long reaperTimerId = -1;
+
+    private final AtomicInteger sessionCount = new AtomicInteger();
+
+    private final AtomicLong estimatedBytes = new AtomicLong();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    public static BoundedSessionStore create(Vertx vertx, JsonObject options) {
+        var store = new BoundedSessionStore();
+        store.init(vertx, options);
+        return store;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public BoundedSessionStore init(Vertx vertx, JsonObject options) {
+
+        this.vertx = vertx;
+        this.random = new PRNG(vertx);
+        this.maxSessions = options.getInteger("maxSessions", 10_000);
+        this.maxBytes = options.getLong("maxBytes", 64L * 1024 * 1024);
+        this.maxLifetime = options.getLong("maxLifetime", 8L * 60 * 60 * 1000);
+
+        var shardCount = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+        this.shards = new ConcurrentHashMap[shardCount];
+        for (var i = 0; i < shardCount; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+
+        this.reaperTimerId = vertx.setPeriodic(options.getLong("reaperInterval", 30_000L), id -> reap());
+
+        var metrics = Metrics.get(vertx);
+        metrics.gauge("sessions", "Sessions in memory", this::sessionCount);
+        metrics.gauge("sessions_estimated_bytes", "Estimated size of the sessions in memory", this::estimatedBytes);
+        metrics.counter("sessions_evictions_total", "Sessions evicted to stay within the limits", this::evictions);
+        metrics.counter("sessions_expirations_total", "Sessions removed after their timeout or lifetime", this::expirations);
+
+        return this;
+    }
+
+    @Override
+    public long retryTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Session createSession(long timeout) {
+        return new SharedDataSessionImpl(random, timeout, DEFAULT_SESSION_ID_LENGTH);
+    }
+
+    @Override
+    public Session createSession(long timeout, int length) {
+        return new SharedDataSessionImpl(random, timeout, length);
+    }
+
+    @Override
+    public void get(String id, Handler<AsyncResult<Session>> resultHandler) {
+
+        var entry = shard(id).get(id);
+        if (entry != null && entry.isExpired(System.currentTimeMillis(), maxLifetime)) {
+            remove(id, entry);
+            expirations.increment();
+            entry = null;
+        }
+
+        resultHandler.handle(Future.succeededFuture(entry == null ? null : entry.session));
+    }
+
+    @Override
+    public void delete(String id, Handler<AsyncResult<Void>> resultHandler) {
+
+        var entry = shard(id).get(id);
+        if (entry != null) {
+            remove(id, entry);
+        }
+
+        resultHandler.handle(Future.succeededFuture());
+    }
+
+    @Override
+    public void put(Session session, Handler<AsyncResult<Void>> resultHandler) {
+        resultHandler.handle(store(session, -1).mapEmpty());
+    }
+
+    /**
+     * Stores the session like {@link #put(Session, Handler)}.
+     *
+     * @param createdAt creation time of a session restored from elsewhere, {@code -1} to keep the one of the stored
+     *                  session or use the current time for new sessions
+     * @return the stored session, serialized once for both the size estimate and the caller
+     */
+    Future<Stored> store(Session session, long createdAt) {
+
+        var shard = shard(session.id());
+        var oldEntry = shard.get(session.id());
+
+        if (oldEntry != null && oldEntry.session != session
+                && ((AbstractSession) oldEntry.session).version() != ((AbstractSession) session).version()) {
+            return Future.failedFuture("Session version mismatch");
+        }
+
+        ((AbstractSession) session).incrementVersion();
+
+        Buffer serialized = null;
+        if (session instanceof ClusterSerializable) {
+            serialized = Buffer.buffer(DEFAULT_SESSION_BYTES);
+            ((ClusterSerializable) session).writeToBuffer(serialized);
+        }
+
+        if (createdAt == -1) {
+            createdAt = oldEntry == null ? System.currentTimeMillis() : oldEntry.createdAt;
+        }
+        var newEntry = new Entry(session, serialized == null ? DEFAULT_SESSION_BYTES : serialized.length(), createdAt);
+
+        var previous = shard.put(session.id(), newEntry);
+        if (previous == null) {
+            sessionCount.incrementAndGet();
+            estimatedBytes.addAndGet(newEntry.bytes);
+        } else {
+            estimatedBytes.addAndGet(newEntry.bytes - previous.bytes);
+        }
+
+        evictWhileOverBudget(session.id());
+
+        return Future.succeededFuture(new Stored(serialized, createdAt));
+    }
+
+    @Override
+    public void clear(Handler<AsyncResult<Void>> resultHandler) {
+
+        for (var shard : shards) {
+            shard.forEach(this::remove);
+        }
+
+        resultHandler.handle(Future.succeededFuture());
+    }
+
+    @Override
+    public void size(Handler<AsyncResult<Integer>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(sessionCount.get()));
+    }
+
+    @Override
+    public void close() {
+        if (reaperTimerId != -1) {
+            vertx.cancelTimer(reaperTimerId);
+        }
+        random.close();
+    }
+
+    public int sessionCount() {
+        return sessionCount.get();
+    }
+
+    public long estimatedBytes() {
+        return estimatedBytes.get();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public long expirations() {
+        return expirations.sum();
+    }
+
+    long maxLifetime() {
+        return maxLifetime;
+    }
+
+    private ConcurrentHashMap<String, Entry> shard(String id) {
+        return shards[id.hashCode() & (shards.length - 1)];
+    }
+
+    private boolean remove(String id, Entry entry) {
+
+        if (!shard(id).remove(id, entry)) {
+            return false;
+        }
+
+        sessionCount.decrementAndGet();
+        estimatedBytes.addAndGet(-entry.bytes);
+        return true;
+    }
+
+    private void evictWhileOverBudget(String protectedId) {
+
+        while (sessionCount.get() > maxSessions || estimatedBytes.get() > maxBytes) {
+
+            var victimId = sampleLeastRecentlyAccessed(protectedId);
+            if (victimId == null) {
+                return;
+            }
+
+            var victim = shard(victimId).get(victimId);
+            if (victim != null && remove(victimId, victim)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private String sampleLeastRecentlyAccessed(String protectedId) {
+
+        var start = ThreadLocalRandom.current().nextInt(shards.length);
+        String victimId = null;
+        var victimAccessed = Long.MAX_VALUE;
+        var sampled = 0;
+
+        for (var i = 0; i < shards.length && sampled < EVICTION_SAMPLE_SIZE; i++) {
+            for (var entry : shards[(start + i) & (shards.length - 1)].entrySet()) {
+
+                if (entry.getKey().equals(protectedId)) {
+                    continue;
+                }
+
+                var accessed = entry.getValue().session.lastAccessed();
+                if (accessed < victimAccessed) {
+                    victimId = entry.getKey();
+                    victimAccessed = accessed;
+                }
+
+                if (++sampled >= EVICTION_SAMPLE_SIZE) {
+                    break;
+                }
+            }
+        }
+
+        return victimId;
+    }
+
+    private void reap() {
+
+        var now = System.currentTimeMillis();
+        for (var shard : shards) {
+            shard.forEach((id, entry) -> {
+                if (entry.isExpired(now, maxLifetime) && remove(id, entry)) {
+                    expirations.increment();
+                }
+            });
+        }
+    }
+
+    /**
+     * Session as stored by {@link #store(Session, long)}.
+     */
+    static class Stored {
+
+        private final Buffer serialized;
+
+        private final long createdAt;
+
+        Stored(Buffer serialized, long createdAt) {
+            this.serialized = serialized;
+            this.createdAt = createdAt;
+        }
+
+        /**
+         * @return the serialized session or {@code null} if the session is not {@link ClusterSerializable}
+         */
+        Buffer serialized() {
+            return serialized;
+        }
+
+        long createdAt() {
+            return createdAt;
+        }
+    }
+
+    private static class Entry {
+
+        private final Session session;
+
+        private final int bytes;
+
+        private final long createdAt;
+
+        Entry(Session session, int bytes, long createdAt) {
+            this.session = session;
+            this.bytes = bytes;
+            this.createdAt = createdAt;
+        }
+
+        boolean isExpired(long now, long maxLifetime) {
+            return now - session.lastAccessed() > session.timeout() || now - createdAt > maxLifetime;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package demo;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Minimal compiled HTML template with positional {@code {}} slots.
+ * <p>
+ * The static fragments are encoded to UTF-8 once when the template is compiled. Rendering only HTML-escapes the slot
+ * values and writes fragments and values into a single pre-sized {@link Buffer}.
+ */
+final class HtmlTemplate {
+
+    private static final String SLOT = "{}";
+
+    private final byte[][] fragments;
+
+    private final int fragmentBytes;
+
+    private HtmlTemplate(byte[][] fragments) {
+        this.fragments = fragments;
+        var bytes = 0;
+        for (var fragment : fragments) {
+            bytes += fragment.length;
+        }
+        this.fragmentBytes = bytes;
+    }
+
+    static HtmlTemplate compile(String template) {
+
+        var fragments = new ArrayList<byte[]>();
+
+        var start = 0;
+        for (var slot = template.indexOf(SLOT); slot >= 0; slot = template.indexOf(SLOT, start)) {
+            fragments.add(template.substring(start, slot).getBytes(StandardCharsets.UTF_8));
+            start = slot + SLOT.length();
+        }
+        fragments.add(template.substring(start).getBytes(StandardCharsets.UTF_8));
+
+        return new HtmlTemplate(fragments.toArray(new byte[0][]));
+    }
+
+    /**
+     * Renders the template with the given slot values, {@code null} values are rendered as empty strings.
+     */
+    Buffer render(String... values) {
+
+        if (values.length != fragments.length - 1) {
+            throw new IllegalArgumentException("Expected " + (fragments.length - 1) + " values, got " + values.length);
+        }
+
+        var size = fragmentBytes;
+        for (var value : values) {
+            size += value == null ? 0 : value.length() + 16;
+        }
+
+        var buffer = Buffer.buffer(size);
+        for (var i = 0; i < values.length; i++) {
+            buffer.appendBytes(fragments[i]);
+            appendEscaped(buffer, values[i]);
+        }
+        buffer.appendBytes(fragments[values.length]);
+
+        return buffer;
+    }
+
+    private static void appendEscaped(Buffer buffer, String value) {
+
+        if (value == null) {
+            return;
+        }
+
+        var plainStart = 0;
+        for (var i = 0; i < value.length(); i++) {
+
+            String replacement;
+            switch (value.charAt(i)) {
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '"':
+                    replacement = "&quot;";
+                    break;
+                case '\'':
+                    replacement = "&#39;";
+                    break;
+                default:
+                    continue;
+            }
+
+            if (plainStart < i) {
+                buffer.appendString(value.substring(plainStart, i));
+            }
+            buffer.appendString(replacement);
+            plainStart = i + 1;
+        }
+
+        if (plainStart == 0) {
+            buffer.appendString(value);
+        } else if (plainStart < value.length()) {
+            buffer.appendString(value.substring(plainStart));
+        }
+    }
+}
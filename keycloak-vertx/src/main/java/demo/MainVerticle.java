@@ -1,7 +1,12 @@
 package demo;
 
+import demo.common.CoarseClock;
+import demo.metrics.MetricsRoutes;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.auth.oauth2.OAuth2Auth;
 import io.vertx.ext.auth.oauth2.OAuth2ClientOptions;
@@ -11,46 +16,103 @@ import io.vertx.ext.auth.oauth2.impl.OAuth2TokenImpl;
 import io.vertx.ext.auth.oauth2.providers.KeycloakAuth;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.Session;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.ext.web.codec.BodyCodec;
+import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.ext.web.handler.AuthHandler;
 import io.vertx.ext.web.handler.BodyHandler;
-import io.vertx.ext.web.handler.CSRFHandler;
 import io.vertx.ext.web.handler.OAuth2AuthHandler;
 import io.vertx.ext.web.handler.SessionHandler;
-import io.vertx.ext.web.sstore.LocalSessionStore;
 import io.vertx.ext.web.sstore.SessionStore;
 
-import java.net.URI;
-import java.time.Instant;
 
 public class MainVerticle extends AbstractVerticle {
 
+    private static final CharSequence TEXT_HTML = HttpHeaders.createOptimized("text/html");
+
+    private static final CharSequence APPLICATION_JSON = HttpHeaders.createOptimized("application/json");
+
+    // pages are compiled once, only the dynamic slots are encoded per request
+    private static final Buffer INDEX_PAGE = Buffer.buffer("<h1>Welcome to Vert.x Keycloak Example</h1><br><a href=\"/protected/\">Protected</a>");
+
+    private static final Buffer USER_MISSING_PAGE = Buffer.buffer("<h1>Request failed user missing</h1>");
+
+    private static final Buffer FORBIDDEN_PAGE = Buffer.buffer("<h1>Forbidden</h1>");
+
+    private static final Buffer EMPTY_JSON = Buffer.buffer("{}");
+
+    private static final HtmlTemplate USER_PAGE = HtmlTemplate.compile("<h1>User Page: {} @{}</h1><a href=\"/protected/\">Protected Area</a>");
+
+    private static final HtmlTemplate ADMIN_PAGE = HtmlTemplate.compile("<h1>Admin Page: {} @{}</h1><a href=\"/protected/\">Protected Area</a>");
+
+    private static final HtmlTemplate LOGOUT_FAILED_PAGE = HtmlTemplate.compile("<h1>Logout failed {}</h1>");
+
+    private static final HtmlTemplate GREET_PAGE = HtmlTemplate.compile("<h1>Hi {} ({}) @{}</h1><ul>" +
+            "<li><a href=\"/protected/user\">User Area</a></li>" +
+            "<li><a href=\"/protected/admin\">Admin Area</a></li>" +
+            "<li><a href=\"/protected/userinfo\">User Info (Remote Call)</a></li>" +
+            "</ul>" +
+            "<form action=\"/logout\" method=\"post\" enctype='multipart/form-data'>" +
+            "<input type=\"hidden\" name=\"" + SessionCsrfHandler.TOKEN_NAME + "\" value=\"{}\">" +
+            "<button>Logout</button></form>");
+
+    private TokenRefreshScheduler tokenRefreshScheduler;
+
+    private CoarseClock clock;
+
+    private OAuth2Auth oauth2Auth;
+
     @Override
     public void start() {
 
-        Router router = Router.router(vertx);
+        clock = CoarseClock.get(vertx);
 
-        // Store session information on the server side
-        SessionStore sessionStore = LocalSessionStore.create(vertx);
+        Router router = Router.router(vertx);
+        MetricsRoutes.install(vertx, router);
+
+        // Store session information on the server side, bounded by number of sessions and estimated size
+        // and persisted to a memory-mapped file to survive restarts
+        JsonObject sessionStoreOptions = new JsonObject()
+                .put("maxSessions", Integer.getInteger("session.maxSessions", 10_000))
+                .put("maxBytes", Long.getLong("session.maxBytes", 64L * 1024 * 1024))
+                .put("maxLifetime", Long.getLong("session.maxLifetime", 8L * 60 * 60 * 1000))
+                .put("path", System.getProperty("session.file", "data/vertx-sessions.bin"));
+        SessionStore sessionStore = PersistentSessionStore.create(vertx, sessionStoreOptions);
         SessionHandler sessionHandler = SessionHandler.create(sessionStore);
-        router.route().handler(sessionHandler);
-
-        // Expose form parameters in request
-        router.route().handler(BodyHandler.create());
 
-        // CSRF handler setup required for logout form
-        String csrfSecret = "zwiebelfische";
-        router.route().handler(CSRFHandler.create(csrfSecret));
-
-        // Used for backend calls with bearer token
-        WebClient webClient = WebClient.create(vertx);
+        // Proactively refresh access tokens of active sessions
+        tokenRefreshScheduler = new TokenRefreshScheduler(vertx,
+                Long.getLong("token.refreshAhead", 60_000L),
+                Long.getLong("token.refreshJitter", 15_000L),
+                Long.getLong("token.idleTimeout", SessionHandler.DEFAULT_SESSION_TIMEOUT),
+                Integer.getInteger("token.maxConcurrentRefreshes", 8));
+        tokenRefreshScheduler.start(Long.getLong("token.refreshTickInterval", 5_000L));
+
+        // Used for backend calls with bearer token, keep connections to Keycloak alive and pooled
+        WebClientOptions webClientOptions = new WebClientOptions();
+        webClientOptions.setKeepAlive(true);
+        webClientOptions.setKeepAliveTimeout(Integer.getInteger("userinfo.keepAliveTimeout", 60));
+        webClientOptions.setMaxPoolSize(Integer.getInteger("userinfo.maxPoolSize", 20));
+        webClientOptions.setHttp2MaxPoolSize(Integer.getInteger("userinfo.http2MaxPoolSize", 2));
+        webClientOptions.setProtocolVersion(Boolean.getBoolean("userinfo.http2") ? HttpVersion.HTTP_2 : HttpVersion.HTTP_1_1);
+        WebClient webClient = WebClient.create(vertx, webClientOptions);
 
         String hostname = System.getProperty("http.host", "localhost");
         int port = Integer.getInteger("http.port", 8090);
         String baseUrl = String.format("http://%s:%d", hostname, port);
         String oauthCallbackPath = "/callback";
 
+        // Only load sessions on routes which need them, anonymous pages like the index stay session-less
+        router.route("/protected/*").handler(sessionHandler).handler(this::restoreUser);
+        router.route(oauthCallbackPath).handler(sessionHandler).handler(this::restoreUser);
+
+        // Expose form parameters and check the CSRF token of the session only for the logout form
+        router.post("/logout")
+                .handler(sessionHandler)
+                .handler(this::restoreUser)
+                .handler(BodyHandler.create(false).setBodyLimit(4096))
+                .handler(SessionCsrfHandler.create());
+
         // Our app is registered as a confidential OpenID Connect client with Authorization Code Flow in Keycloak,
         // thus we need to configure client_id and client_secret
         OAuth2ClientOptions clientOptions = new OAuth2ClientOptions()
@@ -68,6 +130,8 @@ public class MainVerticle extends AbstractVerticle {
                 throw new RuntimeException("Could not configure Keycloak integration via OpenID Connect Discovery Endpoint. Is Keycloak running?");
             }
 
+            this.oauth2Auth = oauth2Auth;
+
             AuthHandler oauth2 = OAuth2AuthHandler.create(oauth2Auth, baseUrl + oauthCallbackPath) //
                     .setupCallback(router.get(oauthCallbackPath)) //
                     // Additional scopes: openid for OpenID Connect
@@ -76,6 +140,9 @@ public class MainVerticle extends AbstractVerticle {
             // protect resources beneath /protected/* with oauth2 handler
             router.route("/protected/*").handler(oauth2);
 
+            // refresh access tokens of active sessions in the background before they expire
+            router.route("/protected/*").handler(this::trackAccessToken);
+
             // configure route handlers
             configureRoutes(router, webClient, oauth2Auth);
         });
@@ -94,13 +161,43 @@ public class MainVerticle extends AbstractVerticle {
 
         // extract discovered userinfo endpoint url
         String userInfoUrl = ((OAuth2AuthProviderImpl) oauth2Auth).getConfig().getUserInfoPath();
-        router.get("/protected/userinfo").handler(createUserInfoHandler(webClient, userInfoUrl));
+        UserInfoClient userInfoClient = new UserInfoClient(webClient, userInfoUrl,
+                Long.getLong("userinfo.cacheTtl", 30_000L), Integer.getInteger("userinfo.cacheMaxEntries", 10_000));
+        router.get("/protected/userinfo").handler(createUserInfoHandler(userInfoClient));
 
         router.post("/logout").handler(this::handleLogout);
     }
 
+    /**
+     * Users restored from the session log lack their provider and the Keycloak RBAC, which logout, refresh and role
+     * checks need, so they are recreated with the discovered provider.
+     */
+    private void restoreUser(RoutingContext ctx) {
+
+        Session session = ctx.session();
+        if (session != null && session.remove(PersistentSessionStore.RESTORED) != null && ctx.user() instanceof OAuth2TokenImpl) {
+            if (oauth2Auth == null) {
+                // not discovered yet, the user has to log in again
+                ctx.clearUser();
+            } else {
+                ctx.setUser(new OAuth2TokenImpl(oauth2Auth, ctx.user().principal()));
+            }
+        }
+
+        ctx.next();
+    }
+
+    private void trackAccessToken(RoutingContext ctx) {
+
+        if (ctx.user() instanceof OAuth2TokenImpl && ctx.session() != null) {
+            tokenRefreshScheduler.track(ctx.session().id(), (OAuth2TokenImpl) ctx.user());
+        }
+
+        ctx.next();
+    }
+
     private void handleIndex(RoutingContext ctx) {
-        respondWithOk(ctx, "text/html", "<h1>Welcome to Vert.x Keycloak Example</h1><br><a href=\"/protected/\">Protected</a>");
+        respondWithOk(ctx, TEXT_HTML, INDEX_PAGE);
     }
 
     private void handleUserPage(RoutingContext ctx) {
@@ -108,15 +205,14 @@ public class MainVerticle extends AbstractVerticle {
         OAuth2TokenImpl user = (OAuth2TokenImpl) ctx.user();
 
         if (user == null) {
-            respondWithServerError(ctx, "text/html", String.format("<h1>Request failed %s</h1>", "user missing"));
+            respondWithServerError(ctx, TEXT_HTML, USER_MISSING_PAGE);
             return;
         }
 
         // extract username from IDToken, there are many more claims like (email, givenanme, familyname etc.) available
         String username = user.idToken().getString("preferred_username");
 
-        String content = String.format("<h1>User Page: %s @%s</h1><a href=\"/protected/\">Protected Area</a>", username, Instant.now());
-        respondWithOk(ctx, "text/html", content);
+        respondWithOk(ctx, TEXT_HTML, USER_PAGE.render(username, clock.iso()));
     }
 
     private void handleAdminPage(RoutingContext ctx) {
@@ -124,7 +220,7 @@ public class MainVerticle extends AbstractVerticle {
         OAuth2TokenImpl user = (OAuth2TokenImpl) ctx.user();
 
         if (user == null) {
-            respondWithServerError(ctx, "text/html", String.format("<h1>Request failed %s</h1>", "user missing"));
+            respondWithServerError(ctx, TEXT_HTML, USER_MISSING_PAGE);
             return;
         }
 
@@ -132,45 +228,37 @@ public class MainVerticle extends AbstractVerticle {
         user.isAuthorized("realm:admin", res -> {
 
             if (!res.succeeded() || !res.result()) {
-                respondWith(ctx, 403, "text/html", "<h1>Forbidden</h1>");
+                respondWith(ctx, 403, TEXT_HTML, FORBIDDEN_PAGE);
                 return;
             }
 
             String username = user.idToken().getString("preferred_username");
 
-            String content = String.format("<h1>Admin Page: %s @%s</h1><a href=\"/protected/\">Protected Area</a>", username, Instant.now());
-            respondWithOk(ctx, "text/html", content);
+            respondWithOk(ctx, TEXT_HTML, ADMIN_PAGE.render(username, clock.iso()));
         });
     }
 
-    private Handler<RoutingContext> createUserInfoHandler(WebClient webClient, String userInfoUrl) {
+    private Handler<RoutingContext> createUserInfoHandler(UserInfoClient userInfoClient) {
 
         return (RoutingContext ctx) -> {
 
             OAuth2TokenImpl user = (OAuth2TokenImpl) ctx.user();
 
             if (user == null) {
-                respondWithServerError(ctx, "text/html", String.format("<h1>Request failed %s</h1>", "user missing"));
+                respondWithServerError(ctx, TEXT_HTML, USER_MISSING_PAGE);
                 return;
             }
 
             // We use the userinfo endpoint as a straw man "backend" to demonstrate backend calls with bearer token
-            URI userInfoEndpointUri = URI.create(userInfoUrl);
-            webClient
-                    .get(userInfoEndpointUri.getPort(), userInfoEndpointUri.getHost(), userInfoEndpointUri.getPath())
-                    // use the access token for calls to other services protected via JWT Bearer authentication
-                    .bearerTokenAuthentication(user.opaqueAccessToken())
-                    .as(BodyCodec.jsonObject())
-                    .send(ar -> {
-
-                        if (!ar.succeeded()) {
-                            respondWith(ctx, 500, "application/json", "{}");
-                            return;
-                        }
-
-                        JsonObject body = ar.result().body();
-                        respondWithOk(ctx, "application/json", body.encode());
-                    });
+            userInfoClient.fetch(user.opaqueAccessToken()).onComplete(ar -> {
+
+                if (!ar.succeeded()) {
+                    respondWithServerError(ctx, APPLICATION_JSON, EMPTY_JSON);
+                    return;
+                }
+
+                respondWithOk(ctx, APPLICATION_JSON, ar.result());
+            });
         };
     }
 
@@ -179,7 +267,7 @@ public class MainVerticle extends AbstractVerticle {
         OAuth2TokenImpl user = (OAuth2TokenImpl) ctx.user();
 
         if (user == null) {
-            respondWithServerError(ctx, "text/html", String.format("<h1>Request failed %s</h1>", "user missing"));
+            respondWithServerError(ctx, TEXT_HTML, USER_MISSING_PAGE);
             return;
         }
 
@@ -187,10 +275,11 @@ public class MainVerticle extends AbstractVerticle {
 
             if (!res.succeeded()) {
                 // the user might not have been logged out, to know why:
-                respondWithServerError(ctx, "text/html", String.format("<h1>Logout failed %s</h1>", res.cause()));
+                respondWithServerError(ctx, TEXT_HTML, LOGOUT_FAILED_PAGE.render(String.valueOf(res.cause())));
                 return;
             }
 
+            tokenRefreshScheduler.untrack(ctx.session().id());
             ctx.session().destroy();
             ctx.response().setStatusCode(302).putHeader("location", "/?logout=true").end();
         });
@@ -201,45 +290,29 @@ public class MainVerticle extends AbstractVerticle {
         OAuth2TokenImpl user = (OAuth2TokenImpl) ctx.user();
 
         if (user == null) {
-            respondWithServerError(ctx, "text/html", String.format("<h1>Logout failed %s</h1>", "user missing"));
+            respondWithServerError(ctx, TEXT_HTML, USER_MISSING_PAGE);
             return;
         }
 
         String username = user.idToken().getString("preferred_username");
         String displayName = user.idToken().getString("name");
+        String csrfToken = SessionCsrfHandler.token(ctx);
 
-        String greeting = String.format("<h1>Hi %s (%s) @%s</h1><ul>" +
-                "<li><a href=\"/protected/user\">User Area</a></li>" +
-                "<li><a href=\"/protected/admin\">Admin Area</a></li>" +
-                "<li><a href=\"/protected/userinfo\">User Info (Remote Call)</a></li>" +
-                "</ul>", username, displayName, Instant.now());
-
-        String logoutForm = createLogoutForm(ctx);
-
-        respondWithOk(ctx, "text/html", greeting + logoutForm);
-    }
-
-    private String createLogoutForm(RoutingContext ctx) {
-
-        String csrfToken = ctx.get(CSRFHandler.DEFAULT_HEADER_NAME);
-
-        return "<form action=\"/logout\" method=\"post\" enctype='multipart/form-data'>"
-                + String.format("<input type=\"hidden\" name=\"%s\" value=\"%s\">", CSRFHandler.DEFAULT_HEADER_NAME, csrfToken)
-                + "<button>Logout</button></form>";
+        respondWithOk(ctx, TEXT_HTML, GREET_PAGE.render(username, displayName, clock.iso(), csrfToken));
     }
 
-    private void respondWithOk(RoutingContext ctx, String contentType, String content) {
+    private void respondWithOk(RoutingContext ctx, CharSequence contentType, Buffer content) {
         respondWith(ctx, 200, contentType, content);
     }
 
-    private void respondWithServerError(RoutingContext ctx, String contentType, String content) {
+    private void respondWithServerError(RoutingContext ctx, CharSequence contentType, Buffer content) {
         respondWith(ctx, 500, contentType, content);
     }
 
-    private void respondWith(RoutingContext ctx, int statusCode, String contentType, String content) {
+    private void respondWith(RoutingContext ctx, int statusCode, CharSequence contentType, Buffer content) {
         ctx.request().response() //
                 .setStatusCode(statusCode) //
-                .putHeader("content-type", contentType) //
+                .putHeader(HttpHeaders.CONTENT_TYPE, contentType) //
                 .end(content);
     }
 }
@@ -0,0 +1,245 @@
+package demo;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.auth.PRNG;
+import io.vertx.ext.web.Session;
+import io.vertx.ext.web.sstore.SessionStore;
+import io.vertx.ext.web.sstore.impl.SharedDataSessionImpl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * {@link SessionStore} that keeps sessions in a {@link BoundedSessionStore} and persists them to a memory-mapped
+ * {@link SessionLog}, so sessions survive restarts.
+ * <p>
+ * Sessions missing from memory, e.g. after a restart or an eviction, are deserialized lazily from the log on first
+ * access, keeping their original creation time for the {@code maxLifetime} limit. A session is only appended to the log
+ * if its serialized form changed or its persisted expiry is about to run out. The log is compacted on a worker thread,
+ * periodically and as soon as it fills up. Each log file can only be opened by one store at a time.
+ * <p>
+ * A restored session carries the {@link #RESTORED} flag until a handler re-attached the state which is not serialized,
+ * like the provider of an OAuth2 user, and removed the flag.
+ * <p>
+ * Supported options in addition to the ones of {@link BoundedSessionStore}: {@code path}, {@code capacity} (bytes) and
+ * {@code compactionInterval} (ms).
+ */
+public class PersistentSessionStore implements SessionStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PersistentSessionStore.class);
+
+    /**
+     * Session data key flagging a session which was restored from the log.
+     */
+    public static final String RESTORED = "__vertx.persistentSessionStore.restored";
+
+    private Vertx vertx;
+
+    private PRNG random;
+
+    private BoundedSessionStore delegate;
+
+    private SessionLog log;
+
+    private long compactionTimerId = -1;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    public static PersistentSessionStore create(Vertx vertx, JsonObject options) {
+        var store = new PersistentSessionStore();
+        store.init(vertx, options);
+        return store;
+    }
+
+    @Override
+    public PersistentSessionStore init(Vertx vertx, JsonObject options) {
+
+        this.vertx = vertx;
+        this.random = new PRNG(vertx);
+        this.delegate = BoundedSessionStore.create(vertx, options);
+
+        var path = Paths.get(options.getString("path", "data/vertx-sessions.bin"));
+        try {
+            this.log = SessionLog.open(path, options.getInteger("capacity", 64 * 1024 * 1024));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open session log " + path, e);
+        }
+        LOG.info(String.format("Mapped %d persisted sessions from %s", log.size(), path));
+
+        this.compactionTimerId = vertx.setPeriodic(options.getLong("compactionInterval", 60_000L), id -> compactIfNeeded());
+
+        return this;
+    }
+
+    @Override
+    public long retryTimeout() {
+        return delegate.retryTimeout();
+    }
+
+    @Override
+    public Session createSession(long timeout) {
+        return delegate.createSession(timeout);
+    }
+
+    @Override
+    public Session createSession(long timeout, int length) {
+        return delegate.createSession(timeout, length);
+    }
+
+    @Override
+    public void get(String id, Handler<AsyncResult<Session>> resultHandler) {
+
+        delegate.get(id, ar -> {
+
+            if (ar.failed() || ar.result() != null) {
+                resultHandler.handle(ar);
+                return;
+            }
+
+            var now = System.currentTimeMillis();
+            var persisted = log.read(id, now);
+            if (persisted == null || now - persisted.createdAt() > delegate.maxLifetime()) {
+                resultHandler.handle(ar);
+                return;
+            }
+
+            var session = new SharedDataSessionImpl(random);
+            session.readFromBuffer(0, Buffer.buffer(persisted.data()));
+            session.put(RESTORED, true);
+
+            // move the restored session back into memory
+            resultHandler.handle(delegate.store(session, persisted.createdAt()).map(session));
+        });
+    }
+
+    @Override
+    public void delete(String id, Handler<AsyncResult<Void>> resultHandler) {
+
+        delegate.delete(id, ar -> {
+
+            try {
+                log.delete(id);
+            } catch (IOException e) {
+                compact();
+                resultHandler.handle(Future.failedFuture(e));
+                return;
+            }
+
+            resultHandler.handle(ar);
+        });
+    }
+
+    @Override
+    public void put(Session session, Handler<AsyncResult<Void>> resultHandler) {
+
+        var stored = delegate.store(session, -1);
+        if (stored.succeeded() && stored.result().serialized() != null) {
+            try {
+                persist(session, stored.result());
+            } catch (IOException e) {
+                LOG.warn("Could not persist session", e);
+                compact();
+            }
+        }
+
+        resultHandler.handle(stored.mapEmpty());
+    }
+
+    @Override
+    public void clear(Handler<AsyncResult<Void>> resultHandler) {
+
+        delegate.clear(ar -> vertx.executeBlocking(promise -> {
+            try {
+                log.clear();
+                promise.complete();
+            } catch (IOException e) {
+                promise.fail(e);
+            }
+        }, false, resultHandler));
+    }
+
+    @Override
+    public void size(Handler<AsyncResult<Integer>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(log.size()));
+    }
+
+    @Override
+    public void close() {
+
+        delegate.close();
+        random.close();
+
+        if (compactionTimerId != -1) {
+            vertx.cancelTimer(compactionTimerId);
+        }
+
+        try {
+            log.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close session log", e);
+        }
+    }
+
+    private void persist(Session session, BoundedSessionStore.Stored stored) throws IOException {
+
+        var buffer = stored.serialized();
+        var data = buffer.getBytes();
+
+        // the serialized session starts with id, timeout, lastAccessed and version, only checksum the session data
+        var dataOffset = Math.min(data.length, Integer.BYTES + buffer.getInt(0) + Long.BYTES + Long.BYTES + Integer.BYTES);
+        var crc = new CRC32();
+        crc.update(data, dataOffset, data.length - dataOffset);
+        var checksum = (int) crc.getValue();
+
+        var expiresAt = session.lastAccessed() + session.timeout();
+
+        // skip unchanged sessions unless the persisted expiry is about to run out
+        if (log.isCurrent(session.id(), checksum, expiresAt - session.timeout() / 2)) {
+            return;
+        }
+
+        log.append(session.id(), expiresAt, stored.createdAt(), checksum, data);
+        compactIfNeeded();
+    }
+
+    private void compactIfNeeded() {
+        if (log.needsCompaction()) {
+            compact();
+        }
+    }
+
+    /**
+     * Compacts the log on a worker thread, unless a compaction is running already. Writes to a full log fail until the
+     * compaction grew it.
+     */
+    private void compact() {
+
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+
+        vertx.executeBlocking(promise -> {
+            try {
+                log.compact(System.currentTimeMillis());
+                promise.complete();
+            } catch (IOException e) {
+                promise.fail(e);
+            }
+        }, false, ar -> {
+            compacting.set(false);
+            if (ar.failed()) {
+                LOG.warn("Session log compaction failed", ar.cause());
+            }
+        });
+    }
+}
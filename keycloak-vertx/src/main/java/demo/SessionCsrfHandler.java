@@ -0,0 +1,65 @@
+package demo;
+
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.CSRFHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * CSRF protection with a synchronizer token stored in the session.
+ * <p>
+ * The token is generated lazily via {@link #token(RoutingContext)} once per session, only when a page actually renders
+ * a form. The handler validates state changing requests against the token of the session, so read-only routes pay
+ * neither for token generation nor for validation.
+ */
+class SessionCsrfHandler implements Handler<RoutingContext> {
+
+    static final String TOKEN_NAME = CSRFHandler.DEFAULT_HEADER_NAME;
+
+    private static final String SESSION_KEY = "csrf.token";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    static SessionCsrfHandler create() {
+        return new SessionCsrfHandler();
+    }
+
+    /**
+     * @return the CSRF token of the current session, generating one on first use
+     */
+    static String token(RoutingContext ctx) {
+
+        String token = ctx.session().get(SESSION_KEY);
+        if (token == null) {
+            var bytes = new byte[32];
+            RANDOM.nextBytes(bytes);
+            token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+            ctx.session().put(SESSION_KEY, token);
+        }
+
+        return token;
+    }
+
+    @Override
+    public void handle(RoutingContext ctx) {
+
+        String expected = ctx.session() == null ? null : ctx.session().get(SESSION_KEY);
+
+        var actual = ctx.request().getHeader(TOKEN_NAME);
+        if (actual == null) {
+            actual = ctx.request().getFormAttribute(TOKEN_NAME);
+        }
+
+        if (expected == null || actual == null
+                || !MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII), actual.getBytes(StandardCharsets.US_ASCII))) {
+            ctx.fail(403);
+            return;
+        }
+
+        ctx.next();
+    }
+}
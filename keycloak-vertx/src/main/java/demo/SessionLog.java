@@ -0,0 +1,536 @@
+package demo;
+
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only log of serialized sessions in a memory-mapped file.
+ * <p>
+ * The log starts with a {@code magic:int version:int} header, followed by records with the layout
+ * {@code type:byte expiresAt:long createdAt:long crc:int idLength:short id:bytes dataLength:int data:bytes}.
+ * The type byte is written last, so a torn write at the end of the log is ignored on the next start. Opening the log only
+ * scans the record headers to rebuild the {@code id -> record} index, session data is read lazily. Superseded and
+ * deleted records are dropped by {@link #compact(long)}, which the caller has to run off the event loop. Written records
+ * never change, so compaction copies them without blocking appends and only replays the records appended meanwhile
+ * under the lock.
+ * <p>
+ * A {@code <file>.lock} next to the log is locked while the log is open, so a second process fails to open it instead
+ * of corrupting it.
+ */
+class SessionLog {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SessionLog.class);
+
+    private static final int MAGIC = 0x534c4f47;
+
+    private static final int VERSION = 2;
+
+    private static final int FILE_HEADER_BYTES = Integer.BYTES + Integer.BYTES;
+
+    private static final byte END = 0;
+
+    private static final byte PUT = 1;
+
+    private static final byte DELETE = 2;
+
+    private static final int HEADER_BYTES = 1 + Long.BYTES + Long.BYTES + Integer.BYTES + Short.BYTES + Integer.BYTES;
+
+    private static final byte[] NO_DATA = new byte[0];
+
+    private final Path path;
+
+    private final Map<String, Slot> index = new HashMap<>();
+
+    private final Object compactionLock = new Object();
+
+    private FileChannel lockChannel;
+
+    private FileLock lock;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer map;
+
+    private int capacity;
+
+    private int writePosition;
+
+    private long liveBytes;
+
+    private SessionLog(Path path, int capacity) {
+        this.path = path;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Maps the log file at the given path, creating it with the given capacity if necessary.
+     *
+     * @throws IOException if the log cannot be mapped or is used by another process
+     */
+    static SessionLog open(Path path, int capacity) throws IOException {
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+
+        var log = new SessionLog(path, (int) Math.max(capacity, Files.exists(path) ? Files.size(path) : 0));
+        log.lock();
+        try {
+            log.map();
+            log.scan(System.currentTimeMillis());
+        } catch (IOException | RuntimeException e) {
+            log.unlock();
+            throw e;
+        }
+        return log;
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return {@code true} if the latest record for the session has the given checksum and does not expire before
+     * {@code minExpiresAt}
+     */
+    synchronized boolean isCurrent(String id, int crc, long minExpiresAt) {
+        var slot = index.get(id);
+        return slot != null && slot.crc == crc && slot.expiresAt >= minExpiresAt;
+    }
+
+    /**
+     * @throws IOException if the log is full, it grows on the next {@link #compact(long)}
+     */
+    synchronized void append(String id, long expiresAt, long createdAt, int crc, byte[] data) throws IOException {
+
+        var idBytes = id.getBytes(StandardCharsets.UTF_8);
+        var recordBytes = HEADER_BYTES + idBytes.length + data.length;
+        ensureCapacity(recordBytes);
+
+        var dataOffset = writeRecord(map, writePosition, PUT, expiresAt, createdAt, crc, idBytes, data);
+        writePosition += recordBytes;
+
+        var previous = index.put(id, new Slot(dataOffset, data.length, recordBytes, expiresAt, createdAt, crc));
+        if (previous != null) {
+            liveBytes -= previous.recordBytes;
+        }
+        liveBytes += recordBytes;
+    }
+
+    synchronized void delete(String id) throws IOException {
+
+        if (!index.containsKey(id)) {
+            return;
+        }
+
+        var idBytes = id.getBytes(StandardCharsets.UTF_8);
+        var recordBytes = HEADER_BYTES + idBytes.length;
+        ensureCapacity(recordBytes);
+
+        writeRecord(map, writePosition, DELETE, 0, 0, 0, idBytes, NO_DATA);
+        writePosition += recordBytes;
+
+        liveBytes -= index.remove(id).recordBytes;
+    }
+
+    /**
+     * @return the persisted session or {@code null} if the session is unknown or expired
+     */
+    synchronized PersistedSession read(String id, long now) {
+
+        var slot = index.get(id);
+        if (slot == null || slot.expiresAt < now) {
+            return null;
+        }
+
+        var data = new byte[slot.dataLength];
+        map.get(slot.dataOffset, data);
+        return new PersistedSession(slot.createdAt, data);
+    }
+
+    void clear() throws IOException {
+        synchronized (compactionLock) {
+            synchronized (this) {
+                index.clear();
+                rewrite(capacity);
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if more than half of the used log space is taken by superseded or deleted records, or if
+     * more than three quarters of the log are used
+     */
+    synchronized boolean needsCompaction() {
+        var used = writePosition - FILE_HEADER_BYTES;
+        return (used - liveBytes > liveBytes && used > capacity / 8) || used > capacity / 4 * 3;
+    }
+
+    /**
+     * Rewrites the log with the live, unexpired records only, growing it if less than half of it would be free. The
+     * compacted log is written to a temporary file first and then atomically moved over the old log. Blocks until the
+     * compacted log was forced to disk.
+     */
+    void compact(long now) throws IOException {
+        synchronized (compactionLock) {
+
+            Map<String, Slot> live;
+            int snapshotPosition;
+            synchronized (this) {
+                live = new HashMap<>(index);
+                live.values().removeIf(slot -> slot.expiresAt < now);
+                snapshotPosition = writePosition;
+            }
+
+            // the records up to the snapshot position cannot change, appends continue meanwhile
+            var compacted = writeCompacted(live, capacity);
+
+            synchronized (this) {
+                try {
+                    compacted.replay(snapshotPosition, writePosition);
+                } catch (IOException | RuntimeException e) {
+                    compacted.discard();
+                    throw e;
+                }
+                replace(compacted);
+            }
+        }
+    }
+
+    synchronized void close() throws IOException {
+        try {
+            map.force();
+            channel.close();
+        } finally {
+            unlock();
+        }
+    }
+
+    private void ensureCapacity(int recordBytes) throws IOException {
+        if (writePosition + recordBytes >= capacity) {
+            throw new IOException("Session log " + path + " is full");
+        }
+    }
+
+    private static int writeRecord(MappedByteBuffer target, int offset, byte type, long expiresAt, long createdAt, int crc, byte[] id, byte[] data) {
+
+        var position = offset + 1;
+        target.putLong(position, expiresAt);
+        position += Long.BYTES;
+        target.putLong(position, createdAt);
+        position += Long.BYTES;
+        target.putInt(position, crc);
+        position += Integer.BYTES;
+        target.putShort(position, (short) id.length);
+        position += Short.BYTES;
+        target.put(position, id);
+        position += id.length;
+        target.putInt(position, data.length);
+        position += Integer.BYTES;
+        target.put(position, data);
+
+        // publish the record by writing its type last
+        target.put(offset, type);
+
+        return position;
+    }
+
+    private void scan(long now) throws IOException {
+
+        if (map.getInt(0) != MAGIC || map.getInt(Integer.BYTES) != VERSION) {
+
+            if (map.get(0) != END) {
+                LOG.warn("Discarding session log " + path + " with an unknown format");
+            }
+
+            // a new log or one written by another version
+            rewrite(capacity);
+            return;
+        }
+
+        var position = FILE_HEADER_BYTES;
+        while (position < capacity - HEADER_BYTES) {
+
+            var type = map.get(position);
+            if (type != PUT && type != DELETE) {
+                break;
+            }
+
+            var expiresAt = map.getLong(position + 1);
+            var createdAt = map.getLong(position + 1 + Long.BYTES);
+            var crc = map.getInt(position + 1 + Long.BYTES + Long.BYTES);
+            var idLength = map.getShort(position + 1 + Long.BYTES + Long.BYTES + Integer.BYTES);
+            var idOffset = position + 1 + Long.BYTES + Long.BYTES + Integer.BYTES + Short.BYTES;
+            var dataLengthOffset = idOffset + idLength;
+            if (idLength < 0 || dataLengthOffset + Integer.BYTES > capacity) {
+                break;
+            }
+
+            var dataLength = map.getInt(dataLengthOffset);
+            var recordBytes = HEADER_BYTES + idLength + dataLength;
+            if (dataLength < 0 || position + recordBytes > capacity) {
+                break;
+            }
+
+            var id = new byte[idLength];
+            map.get(idOffset, id);
+
+            var sessionId = new String(id, StandardCharsets.UTF_8);
+            var previous = type == PUT && expiresAt >= now
+                    ? index.put(sessionId, new Slot(dataLengthOffset + Integer.BYTES, dataLength, recordBytes, expiresAt, createdAt, crc))
+                    : index.remove(sessionId);
+            if (previous != null) {
+                liveBytes -= previous.recordBytes;
+            }
+            if (type == PUT && expiresAt >= now) {
+                liveBytes += recordBytes;
+            }
+
+            position += recordBytes;
+        }
+
+        writePosition = position;
+    }
+
+    private void lock() throws IOException {
+
+        lockChannel = FileChannel.open(path.resolveSibling(path.getFileName() + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by this process already
+            lock = null;
+        }
+
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Session log " + path + " is in use by another session store, configure a separate file per instance");
+        }
+    }
+
+    private void unlock() throws IOException {
+        // closing the channel releases the lock
+        lockChannel.close();
+    }
+
+    private void map() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void rewrite(int minCapacity) throws IOException {
+        replace(writeCompacted(index, minCapacity));
+    }
+
+    private Compacted writeCompacted(Map<String, Slot> live, int minCapacity) throws IOException {
+
+        var required = (long) FILE_HEADER_BYTES + 1;
+        for (var slot : live.values()) {
+            required += slot.recordBytes;
+        }
+
+        // keep at least half of the log free for appends, the records appended during compaction fit in any case as
+        // they fit behind the superseded records in the old log
+        var newCapacity = minCapacity;
+        while (required > newCapacity / 2 && newCapacity <= Integer.MAX_VALUE / 2) {
+            newCapacity *= 2;
+        }
+
+        var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+
+        var compacted = new Compacted(tmp, FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE), newCapacity);
+        try {
+            compacted.target.putInt(0, MAGIC);
+            compacted.target.putInt(Integer.BYTES, VERSION);
+
+            for (var entry : live.entrySet()) {
+                var slot = entry.getValue();
+                var data = new byte[slot.dataLength];
+                map.get(slot.dataOffset, data);
+                compacted.put(entry.getKey(), slot.expiresAt, slot.createdAt, slot.crc, data);
+            }
+            compacted.target.put(compacted.position, END);
+            compacted.target.force();
+        } catch (IOException | RuntimeException e) {
+            compacted.discard();
+            throw e;
+        }
+
+        return compacted;
+    }
+
+    private void replace(Compacted compacted) throws IOException {
+
+        compacted.channel.close();
+        channel.close();
+        Files.move(compacted.tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        index.clear();
+        index.putAll(compacted.index);
+        liveBytes = compacted.liveBytes;
+        writePosition = compacted.position;
+        capacity = compacted.capacity;
+        map();
+    }
+
+    /**
+     * Compacted log in a temporary file, not yet moved over the log.
+     */
+    private class Compacted {
+
+        private final Path tmp;
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer target;
+
+        private final int capacity;
+
+        private final Map<String, Slot> index = new HashMap<>();
+
+        private int position = FILE_HEADER_BYTES;
+
+        private long liveBytes;
+
+        Compacted(Path tmp, FileChannel channel, int capacity) throws IOException {
+            this.tmp = tmp;
+            this.channel = channel;
+            this.target = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            this.capacity = capacity;
+        }
+
+        void put(String id, long expiresAt, long createdAt, int crc, byte[] data) throws IOException {
+
+            var idBytes = id.getBytes(StandardCharsets.UTF_8);
+            var recordBytes = HEADER_BYTES + idBytes.length + data.length;
+            if (position + recordBytes >= capacity) {
+                throw new IOException("Compacted session log " + tmp + " is full");
+            }
+
+            var dataOffset = writeRecord(target, position, PUT, expiresAt, createdAt, crc, idBytes, data);
+            position += recordBytes;
+
+            var previous = index.put(id, new Slot(dataOffset, data.length, recordBytes, expiresAt, createdAt, crc));
+            if (previous != null) {
+                liveBytes -= previous.recordBytes;
+            }
+            liveBytes += recordBytes;
+        }
+
+        private void delete(String id, byte[] idBytes) throws IOException {
+
+            var previous = index.remove(id);
+            if (previous == null) {
+                return;
+            }
+            liveBytes -= previous.recordBytes;
+
+            // the compacted log may contain the deleted record already
+            var recordBytes = HEADER_BYTES + idBytes.length;
+            if (position + recordBytes >= capacity) {
+                throw new IOException("Compacted session log " + tmp + " is full");
+            }
+            writeRecord(target, position, DELETE, 0, 0, 0, idBytes, NO_DATA);
+            position += recordBytes;
+        }
+
+        /**
+         * Applies the records appended to the log between the given positions, which are few compared to the whole log.
+         */
+        void replay(int from, int to) throws IOException {
+
+            for (var record = from; record < to; ) {
+
+                var type = map.get(record);
+                var expiresAt = map.getLong(record + 1);
+                var createdAt = map.getLong(record + 1 + Long.BYTES);
+                var crc = map.getInt(record + 1 + Long.BYTES + Long.BYTES);
+                var idLength = map.getShort(record + 1 + Long.BYTES + Long.BYTES + Integer.BYTES);
+                var idOffset = record + 1 + Long.BYTES + Long.BYTES + Integer.BYTES + Short.BYTES;
+                var dataLength = map.getInt(idOffset + idLength);
+
+                var id = new byte[idLength];
+                map.get(idOffset, id);
+                var sessionId = new String(id, StandardCharsets.UTF_8);
+
+                if (type == PUT) {
+                    var data = new byte[dataLength];
+                    map.get(idOffset + idLength + Integer.BYTES, data);
+                    put(sessionId, expiresAt, createdAt, crc, data);
+                } else {
+                    delete(sessionId, id);
+                }
+
+                record += HEADER_BYTES + idLength + dataLength;
+            }
+
+            target.put(position, END);
+            target.force();
+        }
+
+        void discard() throws IOException {
+            channel.close();
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Serialized session and the time it was created, which bounds its lifetime across restarts.
+     */
+    static class PersistedSession {
+
+        private final long createdAt;
+
+        private final byte[] data;
+
+        PersistedSession(long createdAt, byte[] data) {
+            this.createdAt = createdAt;
+            this.data = data;
+        }
+
+        long createdAt() {
+            return createdAt;
+        }
+
+        byte[] data() {
+            return data;
+        }
+    }
+
+    private static class Slot {
+
+        private final int dataOffset;
+
+        private final int dataLength;
+
+        private final int recordBytes;
+
+        private final long expiresAt;
+
+        private final long createdAt;
+
+        private final int crc;
+
+        Slot(int dataOffset, int dataLength, int recordBytes, long expiresAt, long createdAt, int crc) {
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.recordBytes = recordBytes;
+            this.expiresAt = expiresAt;
+            this.createdAt = createdAt;
+            this.crc = crc;
+        }
+    }
+}
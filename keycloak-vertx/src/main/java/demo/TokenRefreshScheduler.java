@@ -0,0 +1,153 @@
+package demo;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.auth.oauth2.impl.OAuth2TokenImpl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Refreshes the access tokens of active sessions in the background shortly before they expire, so user requests never
+ * wait for the token endpoint.
+ * <p>
+ * Each tick refreshes the tokens which are due in order of their expiry, limited to {@code maxConcurrentRefreshes}
+ * in-flight refreshes. Every token gets a random jitter on its refresh time to spread the load on Keycloak. Sessions
+ * which were not seen for {@code idleTimeout} are no longer tracked. Must be used from a single event loop.
+ */
+class TokenRefreshScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TokenRefreshScheduler.class);
+
+    private final Vertx vertx;
+
+    private final long refreshAheadMillis;
+
+    private final long jitterMillis;
+
+    private final long idleTimeoutMillis;
+
+    private final int maxConcurrentRefreshes;
+
+    private final Map<String, Tracked> tracked = new HashMap<>();
+
+    private int inflightRefreshes;
+
+    TokenRefreshScheduler(Vertx vertx, long refreshAheadMillis, long jitterMillis, long idleTimeoutMillis, int maxConcurrentRefreshes) {
+        this.vertx = vertx;
+        this.refreshAheadMillis = refreshAheadMillis;
+        this.jitterMillis = jitterMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxConcurrentRefreshes = maxConcurrentRefreshes;
+    }
+
+    void start(long tickIntervalMillis) {
+        vertx.setPeriodic(tickIntervalMillis, id -> tick());
+    }
+
+    /**
+     * Marks the token of the given session as active.
+     */
+    void track(String sessionId, OAuth2TokenImpl token) {
+
+        var now = System.currentTimeMillis();
+
+        var entry = tracked.get(sessionId);
+        if (entry == null || entry.token != token) {
+            entry = new Tracked(token, ThreadLocalRandom.current().nextLong(jitterMillis + 1));
+            tracked.put(sessionId, entry);
+        }
+
+        entry.lastSeen = now;
+    }
+
+    void untrack(String sessionId) {
+        tracked.remove(sessionId);
+    }
+
+    private void tick() {
+
+        var now = System.currentTimeMillis();
+        tracked.values().removeIf(entry -> now - entry.lastSeen > idleTimeoutMillis);
+
+        var due = new ArrayList<Tracked>();
+        for (var entry : tracked.values()) {
+            if (!entry.refreshing && entry.refreshAt() <= now) {
+                due.add(entry);
+            }
+        }
+
+        due.sort(Comparator.comparingLong(Tracked::expiresAt));
+
+        for (var entry : due) {
+
+            if (inflightRefreshes >= maxConcurrentRefreshes) {
+                // remaining tokens are picked up by the next tick
+                return;
+            }
+
+            refresh(entry);
+        }
+    }
+
+    private void refresh(Tracked entry) {
+
+        entry.refreshing = true;
+        inflightRefreshes++;
+
+        try {
+            entry.token.refresh(ar -> refreshed(entry, ar.cause()));
+        } catch (RuntimeException e) {
+            // e.g. a token without provider, release the slot like a failed refresh
+            refreshed(entry, e);
+        }
+    }
+
+    private void refreshed(Tracked entry, Throwable failure) {
+
+        inflightRefreshes--;
+        entry.refreshing = false;
+
+        if (failure != null) {
+            // the user has to re-authenticate on the next request
+            LOG.warn("Background token refresh failed: " + failure.getMessage());
+            tracked.values().remove(entry);
+        }
+    }
+
+    private class Tracked {
+
+        private final OAuth2TokenImpl token;
+
+        private final long jitter;
+
+        private long lastSeen;
+
+        private boolean refreshing;
+
+        Tracked(OAuth2TokenImpl token, long jitter) {
+            this.token = token;
+            this.jitter = jitter;
+        }
+
+        long expiresAt() {
+
+            var expiresAt = token.principal().getLong("expires_at");
+            if (expiresAt != null) {
+                return expiresAt;
+            }
+
+            var accessToken = token.accessToken();
+            var exp = accessToken == null ? null : accessToken.getLong("exp");
+            return exp == null ? Long.MAX_VALUE : exp * 1000;
+        }
+
+        long refreshAt() {
+            return expiresAt() - refreshAheadMillis - jitter;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package demo;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.codec.BodyCodec;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fetches the userinfo for an access token from Keycloak.
+ * <p>
+ * Responses are cached per access token for a short TTL and concurrent requests for the same access token are
+ * coalesced into a single upstream call. Must be used from a single event loop.
+ */
+class UserInfoClient {
+
+    private final WebClient webClient;
+
+    private final URI userInfoUri;
+
+    private final long ttlMillis;
+
+    private final Map<String, Future<Buffer>> inflight = new HashMap<>();
+
+    private final Map<String, CacheEntry> cache;
+
+    UserInfoClient(WebClient webClient, String userInfoUrl, long ttlMillis, int maxEntries) {
+        this.webClient = webClient;
+        this.userInfoUri = URI.create(userInfoUrl);
+        this.ttlMillis = ttlMillis;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the JSON encoded userinfo response for the given access token
+     */
+    Future<Buffer> fetch(String accessToken) {
+
+        var entry = cache.get(accessToken);
+        if (entry != null) {
+            if (entry.expiresAt > System.currentTimeMillis()) {
+                return Future.succeededFuture(entry.body);
+            }
+            cache.remove(accessToken);
+        }
+
+        var pending = inflight.get(accessToken);
+        if (pending != null) {
+            return pending;
+        }
+
+        var promise = Promise.<Buffer>promise();
+        inflight.put(accessToken, promise.future());
+
+        webClient
+                .get(userInfoUri.getPort(), userInfoUri.getHost(), userInfoUri.getPath())
+                // use the access token for calls to other services protected via JWT Bearer authentication
+                .bearerTokenAuthentication(accessToken)
+                .as(BodyCodec.buffer())
+                .send(ar -> {
+
+                    inflight.remove(accessToken);
+
+                    if (!ar.succeeded()) {
+                        promise.fail(ar.cause());
+                        return;
+                    }
+
+                    if (ar.result().statusCode() != 200) {
+                        promise.fail("Userinfo request failed with status " + ar.result().statusCode());
+                        return;
+                    }
+
+                    var body = ar.result().body();
+                    cache.put(accessToken, new CacheEntry(body, System.currentTimeMillis() + ttlMillis));
+                    promise.complete(body);
+                });
+
+        return promise.future();
+    }
+
+    private static class CacheEntry {
+
+        private final Buffer body;
+
+        private final long expiresAt;
+
+        CacheEntry(Buffer body, long expiresAt) {
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
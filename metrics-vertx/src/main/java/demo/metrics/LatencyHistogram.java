@@ -0,0 +1,208 @@
+package demo.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Log-linear histogram of latencies in microseconds, similar to HdrHistogram.
+ * <p>
+ * Every power of two is split into 32 linear sub-buckets, so a recorded value is off by at most ~3%. Values from 0 up
+ * to ~71 minutes fit into 896 buckets, larger values are clamped. Each thread records into its own buckets, which only
+ * that thread writes, so recording never locks and never contends, even when every event loop records into the same
+ * histogram. The buckets of a power of two are only allocated once a thread recorded a value of that magnitude, so a
+ * thread typically needs a few hundred bytes per histogram. {@link #snapshot()} merges the buckets of all threads and
+ * folds the buckets of terminated threads into the histogram, releasing their recorders.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int MAX_MAGNITUDE = 31;
+
+    static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+    private final List<Recorder> recorders = new CopyOnWriteArrayList<>();
+
+    /**
+     * Counts of terminated threads, allocated once the first recording thread terminated.
+     */
+    private long[] retiredCounts;
+
+    private long retiredSum;
+
+    private final ThreadLocal<Recorder> recorder = ThreadLocal.withInitial(() -> {
+        var recorder = new Recorder();
+        recorders.add(recorder);
+        return recorder;
+    });
+
+    public void recordMicros(long micros) {
+        recorder.get().record(Math.max(0, Math.min(micros, MAX_VALUE)));
+    }
+
+    public void recordNanosSince(long startNanos) {
+        recordMicros((System.nanoTime() - startNanos) / 1000);
+    }
+
+    public synchronized Snapshot snapshot() {
+
+        var counts = retiredCounts == null ? new long[BUCKETS] : retiredCounts.clone();
+        var sum = retiredSum;
+        for (var recorder : recorders) {
+
+            if (!recorder.owner.isAlive()) {
+
+                // a terminated thread records no more, its recorder is not needed to keep its counts
+                if (retiredCounts == null) {
+                    retiredCounts = new long[BUCKETS];
+                }
+                recorder.addTo(retiredCounts);
+                retiredSum += recorder.sum.get();
+                recorders.remove(recorder);
+            }
+
+            recorder.addTo(counts);
+            sum += recorder.sum.get();
+        }
+
+        return new Snapshot(counts, sum);
+    }
+
+    static int index(long value) {
+
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        var magnitude = 63 - Long.numberOfLeadingZeros(value);
+        var shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return the largest value which falls into the given bucket
+     */
+    static long highestValue(int index) {
+
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        var shift = index / SUB_BUCKETS - 1;
+        var lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    private static class Recorder {
+
+        private final Thread owner = Thread.currentThread();
+
+        /**
+         * Sub-buckets per power of two, allocated on first use.
+         */
+        private final AtomicReferenceArray<AtomicLongArray> counts = new AtomicReferenceArray<>(BUCKETS / SUB_BUCKETS);
+
+        private final AtomicLong sum = new AtomicLong();
+
+        void record(long micros) {
+
+            var index = index(micros);
+            var magnitude = index >>> SUB_BUCKET_BITS;
+            var subBuckets = counts.get(magnitude);
+            if (subBuckets == null) {
+                subBuckets = new AtomicLongArray(SUB_BUCKETS);
+                counts.lazySet(magnitude, subBuckets);
+            }
+
+            // single writer, the lazy set only has to publish the value to the scraping thread eventually
+            var subBucket = index & (SUB_BUCKETS - 1);
+            subBuckets.lazySet(subBucket, subBuckets.get(subBucket) + 1);
+            sum.lazySet(sum.get() + micros);
+        }
+
+        void addTo(long[] target) {
+            for (var magnitude = 0; magnitude < counts.length(); magnitude++) {
+                var subBuckets = counts.get(magnitude);
+                if (subBuckets != null) {
+                    for (var i = 0; i < SUB_BUCKETS; i++) {
+                        target[magnitude * SUB_BUCKETS + i] += subBuckets.get(i);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Merged counts at the time of {@link #snapshot()}.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long sumMicros;
+
+        Snapshot(long[] counts, long sumMicros) {
+
+            var count = 0L;
+            for (var c : counts) {
+                count += c;
+            }
+
+            this.counts = counts;
+            this.count = count;
+            this.sumMicros = sumMicros;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long sumMicros() {
+            return sumMicros;
+        }
+
+        /**
+         * @return the number of values in buckets which lie entirely at or below the given value
+         */
+        public long countAtOrBelow(long micros) {
+
+            var result = 0L;
+            for (var i = 0; i < counts.length && highestValue(i) <= micros; i++) {
+                result += counts[i];
+            }
+
+            return result;
+        }
+
+        /**
+         * @param percentile between {@code 0} and {@code 100}
+         * @return the upper bound of the bucket holding the value at the given percentile, {@code 0} if empty
+         */
+        public long valueAtPercentile(double percentile) {
+
+            if (count == 0) {
+                return 0;
+            }
+
+            var rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            var seen = 0L;
+            for (var i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highestValue(i);
+                }
+            }
+
+            return MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package demo.metrics;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Latency and load metrics of a {@link Vertx} instance in the Prometheus text format.
+ * <p>
+ * Records the latency of HTTP requests by method, route and status class, the round trip of event bus requests by
+ * address, the lag of every event loop and the number of HTTP requests in flight. All latencies are kept in
+ * {@link LatencyHistogram}s, so recording is lock free on every event loop. The event loop lag is probed by a task
+ * which every event loop runs each {@code metrics.lagInterval} milliseconds, the lag is how much later than scheduled
+ * it ran. Values kept elsewhere, like the statistics of a cache, are exported with {@link #counter(String, String, LongSupplier)}
+ * and {@link #gauge(String, String, LongSupplier)}.
+ * <p>
+ * Routers are instrumented with {@link MetricsRoutes}, plain request handlers with {@link #instrument(String, Handler)}.
+ * The metrics are not served on the application ports, but on {@code GET /metrics} of a management server which only
+ * listens if {@code metrics.port} is set, on {@code metrics.host} ({@code localhost} by default).
+ */
+public final class Metrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Metrics.class);
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final Map<Vertx, Metrics> METRICS = new WeakHashMap<>();
+
+    /**
+     * Upper bounds of the exported histogram buckets in microseconds.
+     */
+    private static final long[] BUCKETS = {100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000,
+            250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000};
+
+    private final ConcurrentMap<Route, LatencyHistogram> requests = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LatencyHistogram> eventBusRequests = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LongAdder> eventBusFailures = new ConcurrentHashMap<>();
+
+    private final List<LatencyHistogram> eventLoopLag = new ArrayList<>();
+
+    private final LongAdder inFlight = new LongAdder();
+
+    private final ConcurrentMap<String, Exported> exported = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the metrics of the given {@link Vertx} instance, starting the event loop probes and the management server
+     * on first use
+     */
+    public static Metrics get(Vertx vertx) {
+
+        synchronized (METRICS) {
+
+            var metrics = METRICS.get(vertx);
+            if (metrics == null) {
+                metrics = new Metrics();
+                metrics.probeEventLoops(vertx, TimeUnit.MILLISECONDS.toNanos(Long.getLong("metrics.lagInterval", 50L)));
+                metrics.serve(vertx, Integer.getInteger("metrics.port", -1), System.getProperty("metrics.host", "localhost"));
+                METRICS.put(vertx, metrics);
+            }
+
+            return metrics;
+        }
+    }
+
+    /**
+     * Marks the start of an HTTP request.
+     *
+     * @return the start time to pass to {@link #requestEnded(HttpMethod, String, int, long)}
+     */
+    public long requestStarted() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * @param route the route pattern like {@code /api/v1/hello/:name}, never the actual path
+     */
+    public void requestEnded(HttpMethod method, String route, int statusCode, long startNanos) {
+
+        inFlight.decrement();
+
+        // only status classes a route actually answered with get a histogram
+        var statusClass = Math.max(0, Math.min(statusCode / 100, 5));
+        requests.computeIfAbsent(new Route(method, route, statusClass), key -> new LatencyHistogram()).recordNanosSince(startNanos);
+    }
+
+    /**
+     * Records the round trip of an event bus request to the given address once it completes.
+     */
+    public <T> Future<T> timeRequest(String address, Future<T> request) {
+
+        var start = System.nanoTime();
+        return request.onComplete(ar -> {
+            if (ar.succeeded()) {
+                eventBusRequests.computeIfAbsent(address, key -> new LatencyHistogram()).recordNanosSince(start);
+            } else {
+                eventBusFailures.computeIfAbsent(address, key -> new LongAdder()).increment();
+            }
+        });
+    }
+
+    /**
+     * Exports a monotonic value read on every scrape. Registering a name again replaces the previous value.
+     */
+    public void counter(String name, String help, LongSupplier value) {
+        exported.put(name, new Exported("counter", help, value));
+    }
+
+    /**
+     * Exports a value read on every scrape. Registering a name again replaces the previous value.
+     */
+    public void gauge(String name, String help, LongSupplier value) {
+        exported.put(name, new Exported("gauge", help, value));
+    }
+
+    /**
+     * Times all requests of a plain request handler under the given route.
+     */
+    public Handler<HttpServerRequest> instrument(String route, Handler<HttpServerRequest> handler) {
+
+        return request -> {
+            var start = requestStarted();
+            request.response().endHandler(v -> requestEnded(request.method(), route, request.response().getStatusCode(), start));
+            handler.handle(request);
+        };
+    }
+
+    /**
+     * @return all metrics in the Prometheus text exposition format
+     */
+    public String scrape() {
+
+        var out = new StringBuilder(4096);
+
+        header(out, "http_server_requests_seconds", "histogram", "Latency of HTTP requests by route");
+        requests.forEach((route, histogram) -> {
+            var labels = "method=\"" + route.method + "\",route=\"" + escape(route.path) + "\",status=\"" + route.statusClass + "xx\"";
+            histogram(out, "http_server_requests_seconds", labels, histogram.snapshot());
+        });
+
+        header(out, "http_server_requests_active", "gauge", "HTTP requests in flight");
+        out.append("http_server_requests_active ").append(inFlight.sum()).append('\n');
+
+        header(out, "eventbus_request_seconds", "histogram", "Round trip of successful event bus requests by address");
+        eventBusRequests.forEach((address, histogram) ->
+                histogram(out, "eventbus_request_seconds", "address=\"" + escape(address) + "\"", histogram.snapshot()));
+
+        header(out, "eventbus_request_failures_total", "counter", "Failed or timed out event bus requests by address");
+        eventBusFailures.forEach((address, failures) -> out.append("eventbus_request_failures_total{address=\"")
+                .append(escape(address)).append("\"} ").append(failures.sum()).append('\n'));
+
+        header(out, "eventloop_lag_seconds", "histogram", "Delay of tasks scheduled on the event loops");
+        for (var i = 0; i < eventLoopLag.size(); i++) {
+            histogram(out, "eventloop_lag_seconds", "loop=\"" + i + "\"", eventLoopLag.get(i).snapshot());
+        }
+
+        exported.forEach((name, value) -> {
+            header(out, name, value.type, value.help);
+            out.append(name).append(' ').append(value.value.getAsLong()).append('\n');
+        });
+
+        return out.toString();
+    }
+
+    private void serve(Vertx vertx, int port, String host) {
+
+        if (port < 0) {
+            return;
+        }
+
+        vertx.createHttpServer(new HttpServerOptions().setHost(host).setPort(port))
+                .requestHandler(request -> {
+                    if (request.method() == HttpMethod.GET && "/metrics".equals(request.path())) {
+                        request.response().putHeader(HttpHeaders.CONTENT_TYPE, CONTENT_TYPE).end(scrape());
+                    } else {
+                        request.response().setStatusCode(404).end();
+                    }
+                })
+                .listen(ar -> {
+                    if (ar.succeeded()) {
+                        LOG.info("Serving metrics on http://" + host + ":" + ar.result().actualPort() + "/metrics");
+                    } else {
+                        LOG.warn("Could not serve metrics on " + host + ":" + port, ar.cause());
+                    }
+                });
+    }
+
+    private void probeEventLoops(Vertx vertx, long intervalNanos) {
+
+        for (var loop : vertx.nettyEventLoopGroup()) {
+            var histogram = new LatencyHistogram();
+            eventLoopLag.add(histogram);
+            probe(loop, histogram, intervalNanos);
+        }
+    }
+
+    private static void probe(EventExecutor loop, LatencyHistogram histogram, long intervalNanos) {
+
+        if (loop.isShuttingDown()) {
+            return;
+        }
+
+        var scheduled = System.nanoTime() + intervalNanos;
+        loop.schedule(() -> {
+            histogram.recordNanosSince(scheduled);
+            probe(loop, histogram, intervalNanos);
+        }, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram.Snapshot snapshot) {
+
+        if (snapshot.count() == 0) {
+            return;
+        }
+
+        for (var bucket : BUCKETS) {
+            out.append(name).append("_bucket{").append(labels).append(",le=\"").append(seconds(bucket)).append("\"} ")
+                    .append(snapshot.countAtOrBelow(bucket)).append('\n');
+        }
+        out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(snapshot.count()).append('\n');
+        out.append(name).append("_sum{").append(labels).append("} ").append(seconds(snapshot.sumMicros())).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(snapshot.count()).append('\n');
+    }
+
+    private static String seconds(long micros) {
+        return BigDecimal.valueOf(micros, 6).stripTrailingZeros().toPlainString();
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class Exported {
+
+        private final String type;
+
+        private final String help;
+
+        private final LongSupplier value;
+
+        Exported(String type, String help, LongSupplier value) {
+            this.type = type;
+            this.help = help;
+            this.value = value;
+        }
+    }
+
+    private static class Route {
+
+        private final HttpMethod method;
+
+        private final String path;
+
+        private final int statusClass;
+
+        Route(HttpMethod method, String path, int statusClass) {
+            this.method = method;
+            this.path = path;
+            this.statusClass = statusClass;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Route)) {
+                return false;
+            }
+
+            var that = (Route) o;
+            return method == that.method && statusClass == that.statusClass && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(method, path, statusClass);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package demo.metrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Instruments a {@link Router} with the {@link Metrics} of its {@link Vertx} instance.
+ */
+public final class MetricsRoutes {
+
+    private MetricsRoutes() {
+    }
+
+    /**
+     * Times every request of the router by the path of the route which handled it. Call it before any other route is
+     * added, so that the timing route runs first. The metrics are served by the management server of {@link Metrics}.
+     */
+    public static Metrics install(Vertx vertx, Router router) {
+
+        var metrics = Metrics.get(vertx);
+
+        router.route().handler(ctx -> {
+            var start = metrics.requestStarted();
+            // also called when the connection closes before the response was ended
+            ctx.response().endHandler(v -> metrics.requestEnded(ctx.request().method(), route(ctx), ctx.response().getStatusCode(), start));
+            ctx.next();
+        });
+
+        return metrics;
+    }
+
+    private static String route(RoutingContext ctx) {
+
+        var route = ctx.currentRoute();
+        var path = route == null ? null : route.getPath();
+        if (path != null) {
+            return path;
+        }
+
+        // the catch-all timing route is only current if no other route matched
+        return ctx.response().getStatusCode() == 404 ? "unmatched" : "*";
+    }
+}
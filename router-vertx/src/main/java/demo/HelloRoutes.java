@@ -0,0 +1,36 @@
+package demo;
+
+import demo.common.CoarseClock;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * The hello routes of this module, also dispatched by the router benchmark.
+ */
+public final class HelloRoutes {
+
+    private static final PrefixedResponse HELLO = PrefixedResponse.of("Hi Vertex ");
+
+    private static final PrefixedResponse HELLO_NAME = PrefixedResponse.of("Hi ");
+
+    private final CoarseClock clock;
+
+    private HelloRoutes(CoarseClock clock) {
+        this.clock = clock;
+    }
+
+    public static void install(Router router, CoarseClock clock) {
+        var routes = new HelloRoutes(clock);
+        router.get("/api/v1/hello").handler(routes::onHello);
+        router.get("/api/v1/hello/:name").handler(routes::onHelloName);
+    }
+
+    private void onHelloName(RoutingContext ctx) {
+        String name = ctx.pathParam("name");
+        HELLO_NAME.body(name.length() + 32).append(name).append(' ').append(clock.isoBytes()).end(ctx.response());
+    }
+
+    private void onHello(RoutingContext ctx) {
+        HELLO.body(24).append(clock.isoBytes()).end(ctx.response());
+    }
+}
@@ -1,30 +1,24 @@
 package demo;
 
+import demo.common.CoarseClock;
+import demo.common.HttpServers;
+import demo.metrics.MetricsRoutes;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
 import io.vertx.ext.web.Router;
-import io.vertx.ext.web.RoutingContext;
-
-import java.time.Instant;
 
 public class MainVerticle extends AbstractVerticle {
 
     @Override
-    public void start() {
+    public void start(Promise<Void> startPromise) {
 
         Router r = Router.router(vertx);
-        r.get("/api/v1/hello").handler(this::onHello);
-        r.get("/api/v1/hello/:name").handler(this::onHelloName);
-
-        getVertx().createHttpServer().requestHandler(r).listen(7000);
-    }
-
-    private void onHelloName(RoutingContext ctx) {
-        String name = ctx.pathParam("name");
-        ctx.request().response().end(String.format("Hi %s %s", name, Instant.now()));
-    }
+        MetricsRoutes.install(vertx, r);
+        HelloRoutes.install(r, CoarseClock.get(vertx));
 
-    private void onHello(RoutingContext ctx) {
-        ctx.request().response().end("Hi Vertex " + Instant.now());
+        getVertx().createHttpServer(HttpServers.options(vertx, config(), 7000))
+                .requestHandler(r)
+                .listen(ar -> startPromise.handle(ar.mapEmpty()));
     }
 
 }
@@ -0,0 +1,66 @@
+package demo;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Response body with a constant prefix followed by a few variable parts.
+ * <p>
+ * The prefix is encoded once into a direct {@link Buffer}, which is shared by all responses and written to the socket
+ * without copying. Only the variable parts are encoded per request. The {@code content-length} is set up front, so the
+ * response is never chunked.
+ */
+final class PrefixedResponse {
+
+    private final Buffer prefix;
+
+    private PrefixedResponse(Buffer prefix) {
+        this.prefix = prefix;
+    }
+
+    static PrefixedResponse of(String prefix) {
+        var bytes = prefix.getBytes(StandardCharsets.UTF_8);
+        return new PrefixedResponse(Buffer.buffer(Unpooled.directBuffer(bytes.length, bytes.length).writeBytes(bytes)));
+    }
+
+    /**
+     * Starts a body with room for {@code sizeHint} bytes of variable parts.
+     */
+    Body body(int sizeHint) {
+        return new Body(Buffer.buffer(sizeHint));
+    }
+
+    final class Body {
+
+        private final Buffer buffer;
+
+        private Body(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        Body append(String value) {
+            buffer.appendString(value);
+            return this;
+        }
+
+        Body append(byte[] value) {
+            buffer.appendBytes(value);
+            return this;
+        }
+
+        Body append(char ascii) {
+            buffer.appendByte((byte) ascii);
+            return this;
+        }
+
+        void end(HttpServerResponse response) {
+            response.putHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(prefix.length() + buffer.length()))
+                    .write(prefix)
+                    .end(buffer);
+        }
+    }
+}
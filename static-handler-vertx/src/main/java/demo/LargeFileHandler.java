@@ -0,0 +1,426 @@
+package demo;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.impl.MimeMapping;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.web.RoutingContext;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Serves files of at least {@code threshold} bytes below a static root without loading them into memory.
+ * <p>
+ * Full and single range responses are written with {@link HttpServerResponse#sendFile(String, long, long)}, which
+ * uses a zero-copy {@code FileRegion} on plain connections. {@code Range} requests with multiple ranges are answered
+ * with a {@code multipart/byteranges} body, the parts are read in chunks from an {@link AsyncFile} on the worker pool
+ * and written with back-pressure. Overlapping ranges are coalesced and requests with more than {@link #MAX_RANGES}
+ * ranges are served in full.
+ * <p>
+ * The metadata of the most recently used files and their open {@link AsyncFile} handles are kept in a bounded LRU
+ * cache, the metadata is re-checked after {@code checkIntervalMillis}. Smaller files and directories are passed on to
+ * the next handler. Must be used from a single event loop.
+ */
+class LargeFileHandler implements Handler<RoutingContext> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LargeFileHandler.class);
+
+    static final int MAX_RANGES = 16;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final CharSequence RANGE = HttpHeaders.createOptimized("range");
+
+    private static final CharSequence IF_RANGE = HttpHeaders.createOptimized("if-range");
+
+    private static final CharSequence BYTES = HttpHeaders.createOptimized("bytes");
+
+    private static final OpenOptions READ_ONLY = new OpenOptions().setRead(true).setWrite(false).setCreate(false);
+
+    private final Vertx vertx;
+
+    private final String root;
+
+    private final long threshold;
+
+    private final long checkIntervalMillis;
+
+    private final Map<String, FileEntry> files;
+
+    LargeFileHandler(Vertx vertx, String root, long threshold, int maxOpenFiles, long checkIntervalMillis) {
+        this.vertx = vertx;
+        this.root = root;
+        this.threshold = threshold;
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.files = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FileEntry> eldest) {
+                if (size() > maxOpenFiles) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public void handle(RoutingContext ctx) {
+
+        var method = ctx.request().method();
+        var path = ctx.normalisedPath();
+        if ((method != HttpMethod.GET && method != HttpMethod.HEAD) || path.endsWith("/")) {
+            ctx.next();
+            return;
+        }
+
+        var file = root + path;
+        var now = System.currentTimeMillis();
+
+        var entry = files.get(file);
+        if (entry != null && now - entry.checkedAt < checkIntervalMillis) {
+            serve(ctx, entry);
+            return;
+        }
+
+        vertx.fileSystem().props(file, ar -> {
+
+            if (ar.failed() || !ar.result().isRegularFile() || ar.result().size() < threshold) {
+                var removed = files.remove(file);
+                if (removed != null) {
+                    removed.evict();
+                }
+                ctx.next();
+                return;
+            }
+
+            var props = ar.result();
+            var current = files.get(file);
+            if (current == null || current.size != props.size() || current.lastModified != props.lastModifiedTime()) {
+                if (current != null) {
+                    current.evict();
+                }
+                current = new FileEntry(file, props.size(), props.lastModifiedTime());
+                files.put(file, current);
+            }
+            current.checkedAt = now;
+
+            serve(ctx, current);
+        });
+    }
+
+    private void serve(RoutingContext ctx, FileEntry entry) {
+
+        var request = ctx.request();
+        var response = ctx.response()
+                .putHeader(HttpHeaders.ETAG, entry.etag)
+                .putHeader(HttpHeaders.LAST_MODIFIED, entry.lastModifiedHeader)
+                .putHeader(HttpHeaders.ACCEPT_RANGES, BYTES);
+
+        var ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(entry.etag) || ifNoneMatch.trim().equals("*"))) {
+            response.setStatusCode(304).end();
+            return;
+        }
+
+        var range = request.getHeader(RANGE);
+        var ifRange = request.getHeader(IF_RANGE);
+        if (ifRange != null && !ifRange.equals(entry.etag) && !ifRange.equals(entry.lastModifiedHeader)) {
+            // the client has an outdated copy and needs the whole file
+            range = null;
+        }
+
+        var ranges = range == null ? null : parseRanges(range, entry.size);
+        if (ranges == null) {
+            response.putHeader(HttpHeaders.CONTENT_TYPE, entry.contentType);
+            send(response, request.method(), entry, 0, entry.size);
+            return;
+        }
+
+        if (ranges.isEmpty()) {
+            response.setStatusCode(416).putHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + entry.size).end();
+            return;
+        }
+
+        response.setStatusCode(206);
+
+        if (ranges.size() == 1) {
+            var single = ranges.get(0);
+            response.putHeader(HttpHeaders.CONTENT_TYPE, entry.contentType)
+                    .putHeader(HttpHeaders.CONTENT_RANGE, contentRange(single, entry.size));
+            send(response, request.method(), entry, single[0], single[1] - single[0] + 1);
+            return;
+        }
+
+        sendMultipart(response, request.method(), entry, ranges);
+    }
+
+    private void send(HttpServerResponse response, HttpMethod method, FileEntry entry, long offset, long length) {
+
+        response.putHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(length));
+        if (method == HttpMethod.HEAD) {
+            response.end();
+            return;
+        }
+
+        response.sendFile(entry.path, offset, length);
+    }
+
+    private void sendMultipart(HttpServerResponse response, HttpMethod method, FileEntry entry, List<long[]> ranges) {
+
+        var partHeaders = new ArrayList<Buffer>(ranges.size());
+        var contentLength = 0L;
+        for (var range : ranges) {
+            var partHeader = Buffer.buffer("\r\n--" + entry.boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + entry.contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, entry.size) + "\r\n\r\n");
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length() + range[1] - range[0] + 1;
+        }
+        var closing = Buffer.buffer("\r\n--" + entry.boundary + "--\r\n");
+        contentLength += closing.length();
+
+        response.putHeader(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + entry.boundary)
+                .putHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(contentLength));
+        if (method == HttpMethod.HEAD) {
+            response.end();
+            return;
+        }
+
+        // a closed connection never drains, so a copy waiting for it would hold on to the file forever
+        var done = Promise.<Void>promise();
+        response.closeHandler(v -> done.tryFail("Connection closed"));
+        response.exceptionHandler(done::tryFail);
+
+        entry.acquire().compose(file -> {
+
+            Future<Void> parts = Future.succeededFuture();
+            for (var i = 0; i < ranges.size(); i++) {
+                var partHeader = partHeaders.get(i);
+                var range = ranges.get(i);
+                parts = parts.compose(v -> {
+                    response.write(partHeader);
+                    return copy(file, response, range[0], range[1] - range[0] + 1);
+                });
+            }
+            return parts;
+        }).onComplete(ar -> {
+            if (ar.failed()) {
+                done.tryFail(ar.cause());
+            } else {
+                done.tryComplete();
+            }
+        });
+
+        done.future().onComplete(ar -> {
+
+            entry.release();
+
+            if (ar.failed()) {
+                LOG.debug("Could not send ranges of " + entry.path + ": " + ar.cause().getMessage());
+                response.close();
+                return;
+            }
+
+            response.end(closing);
+        });
+    }
+
+    private Future<Void> copy(AsyncFile file, HttpServerResponse response, long position, long remaining) {
+
+        if (remaining == 0) {
+            return Future.succeededFuture();
+        }
+
+        if (response.closed()) {
+            return Future.failedFuture("Connection closed");
+        }
+
+        var promise = Promise.<Void>promise();
+        var length = (int) Math.min(CHUNK_SIZE, remaining);
+
+        file.read(Buffer.buffer(length), 0, position, length, ar -> {
+
+            if (ar.failed()) {
+                promise.fail(ar.cause());
+                return;
+            }
+
+            response.write(ar.result());
+
+            if (response.writeQueueFull()) {
+                response.drainHandler(v -> copy(file, response, position + length, remaining - length).onComplete(promise));
+            } else {
+                copy(file, response, position + length, remaining - length).onComplete(promise);
+            }
+        });
+
+        return promise.future();
+    }
+
+    /**
+     * Parses the given {@code Range} header into sorted, non-overlapping {@code [first, last]} byte ranges.
+     *
+     * @return {@code null} if the header should be ignored, an empty list if no range is satisfiable
+     */
+    static List<long[]> parseRanges(String header, long size) {
+
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+
+        var specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        var ranges = new ArrayList<long[]>(specs.length);
+        for (var spec : specs) {
+
+            spec = spec.trim();
+            var dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+
+            long first;
+            long last;
+            try {
+                if (dash == 0) {
+                    // suffix range with the last n bytes
+                    var suffix = Long.parseLong(spec.substring(1));
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    first = Math.max(0, size - suffix);
+                    last = suffix == 0 ? -1 : size - 1;
+                } else {
+                    first = Long.parseLong(spec.substring(0, dash));
+                    last = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                    if (first < 0 || last < first) {
+                        return null;
+                    }
+                    last = Math.min(last, size - 1);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            // ranges starting beyond the end are not satisfiable
+            if (first < size && first <= last) {
+                ranges.add(new long[]{first, last});
+            }
+        }
+
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+
+        var coalesced = new ArrayList<long[]>(ranges.size());
+        for (var range : ranges) {
+            var previous = coalesced.isEmpty() ? null : coalesced.get(coalesced.size() - 1);
+            if (previous != null && range[0] <= previous[1] + 1) {
+                previous[1] = Math.max(previous[1], range[1]);
+            } else {
+                coalesced.add(range);
+            }
+        }
+
+        return coalesced;
+    }
+
+    private static String contentRange(long[] range, long size) {
+        return "bytes " + range[0] + "-" + range[1] + "/" + size;
+    }
+
+    private class FileEntry {
+
+        private final String path;
+
+        private final long size;
+
+        private final long lastModified;
+
+        private final String etag;
+
+        private final String lastModifiedHeader;
+
+        private final String contentType;
+
+        private final String boundary;
+
+        private long checkedAt;
+
+        private Future<AsyncFile> file;
+
+        private int users;
+
+        private boolean evicted;
+
+        FileEntry(String path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+            this.lastModifiedHeader = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(lastModified).atZone(ZoneOffset.UTC));
+            var contentType = MimeMapping.getMimeTypeForFilename(path);
+            this.contentType = contentType == null ? "application/octet-stream" : contentType;
+            this.boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        }
+
+        Future<AsyncFile> acquire() {
+
+            users++;
+            if (file == null) {
+                var promise = Promise.<AsyncFile>promise();
+                vertx.fileSystem().open(path, READ_ONLY, promise);
+                var opening = promise.future();
+                file = opening;
+
+                // the next request tries again instead of failing until the entry is evicted
+                opening.onFailure(e -> {
+                    if (file == opening) {
+                        file = null;
+                    }
+                });
+            }
+
+            return file;
+        }
+
+        void release() {
+            users--;
+            closeIfUnused();
+        }
+
+        void evict() {
+            evicted = true;
+            closeIfUnused();
+        }
+
+        private void closeIfUnused() {
+
+            if (!evicted || users > 0 || file == null) {
+                return;
+            }
+
+            file.onSuccess(AsyncFile::close);
+            file = null;
+        }
+    }
+}
@@ -1,34 +1,44 @@
 package demo;
 
+import demo.common.CoarseClock;
+import demo.common.HttpServers;
+import demo.metrics.MetricsRoutes;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.http.HttpServer;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
-import io.vertx.ext.web.handler.StaticHandler;
-
-import java.time.Instant;
 
 public class MainVerticle extends AbstractVerticle {
 
+    private CoarseClock clock;
+
     @Override
-    public void start() {
+    public void start(Promise<Void> startPromise) {
+
+        clock = CoarseClock.get(vertx);
 
         var r = Router.router(vertx);
+        MetricsRoutes.install(vertx, r);
 
         r.get("/api/hello").handler(this::onHello);
         r.get("/api/hello/:name").handler(this::onHelloName);
 
-        r.route().handler(StaticHandler.create("static"));
-
-        getVertx().createHttpServer().requestHandler(r).listen(8080);
+        StaticRoutes.install(vertx, r, "static")
+                .compose(v -> Future.<HttpServer>future(listen -> getVertx().createHttpServer(HttpServers.options(vertx, config(), 8080))
+                        .requestHandler(r)
+                        .listen(listen)))
+                .onComplete(ar -> startPromise.handle(ar.mapEmpty()));
     }
 
     private void onHelloName(RoutingContext ctx) {
         var name = ctx.pathParam("name");
-        ctx.request().response().end(String.format("Hi %s %s", name, Instant.now()));
+        ctx.request().response().end(String.format("Hi %s %s", name, clock.iso()));
     }
 
     private void onHello(RoutingContext ctx) {
-        ctx.request().response().end("Hi Vertex " + Instant.now());
+        ctx.request().response().end("Hi Vertex " + clock.iso());
     }
 
 }
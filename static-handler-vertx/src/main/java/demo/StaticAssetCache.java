@@ -0,0 +1,414 @@
+package demo;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.impl.MimeMapping;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.RoutingContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the files below a static root from memory.
+ * <p>
+ * All files up to {@code maxAssetSize} bytes are loaded once on startup. A gzip variant is precomputed for every file
+ * which compresses by at least 10%, a brotli variant is picked up from a precompressed {@code <file>.br} next to the
+ * file. Each variant carries a strong ETag, the variant with the highest q-value in {@code Accept-Encoding} is served,
+ * the smaller one on a tie, and conditional requests with a matching {@code If-None-Match} are answered with {@code 304}. Bodies and headers are encoded once
+ * and shared by all responses. Requests for unknown or larger files are passed on to the next handler.
+ * <p>
+ * With a {@code watchInterval} the root is checked for changes periodically and reloaded as a whole, which is meant
+ * for development only.
+ */
+class StaticAssetCache implements Handler<RoutingContext>, Shareable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StaticAssetCache.class);
+
+    private static final String INDEX = "index.html";
+
+    private static final String BROTLI_SUFFIX = ".br";
+
+    private static final CharSequence VARY = HttpHeaders.createOptimized("vary");
+
+    private static final CharSequence GZIP = HttpHeaders.createOptimized("gzip");
+
+    private static final CharSequence BROTLI = HttpHeaders.createOptimized("br");
+
+    private static final CharSequence CACHE_CONTROL = HttpHeaders.createOptimized("public, max-age=86400");
+
+    private final Vertx vertx;
+
+    private final String root;
+
+    private final long maxAssetSize;
+
+    private final Promise<Void> ready = Promise.promise();
+
+    private volatile Map<String, Asset> assets = Map.of();
+
+    private volatile long fingerprint;
+
+    private StaticAssetCache(Vertx vertx, String root, long maxAssetSize) {
+        this.vertx = vertx;
+        this.root = root;
+        this.maxAssetSize = maxAssetSize;
+    }
+
+    /**
+     * Returns the cache for the given root shared by all verticle instances, loading it on first use.
+     */
+    static StaticAssetCache shared(Vertx vertx, String root, long maxAssetSize, long watchIntervalMillis) {
+
+        var caches = vertx.sharedData().<String, StaticAssetCache>getLocalMap(StaticAssetCache.class.getName());
+        return caches.computeIfAbsent(root, key -> {
+
+            var cache = new StaticAssetCache(vertx, root, maxAssetSize);
+            cache.reload().onComplete(cache.ready);
+
+            if (watchIntervalMillis > 0) {
+                vertx.setPeriodic(watchIntervalMillis, id -> cache.reloadIfChanged());
+            }
+
+            return cache;
+        });
+    }
+
+    /**
+     * Completes once the assets were loaded initially.
+     */
+    Future<Void> ready() {
+        return ready.future();
+    }
+
+    int size() {
+        return assets.size();
+    }
+
+    @Override
+    public void handle(RoutingContext ctx) {
+
+        var method = ctx.request().method();
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            ctx.next();
+            return;
+        }
+
+        var path = ctx.normalisedPath();
+        var asset = assets.get(path.endsWith("/") ? path.substring(1) + INDEX : path.substring(1));
+        if (asset == null) {
+            ctx.next();
+            return;
+        }
+
+        var request = ctx.request();
+        var variant = asset.negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+
+        var response = ctx.response()
+                .putHeader(HttpHeaders.ETAG, variant.etagHeader)
+                .putHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        if (asset.hasVariants()) {
+            response.putHeader(VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        if (variant.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            // no Content-Length, on a 304 it would describe the representation instead of the empty body
+            response.setStatusCode(304).end();
+            return;
+        }
+
+        response.putHeader(HttpHeaders.CONTENT_TYPE, asset.contentType)
+                .putHeader(HttpHeaders.CONTENT_LENGTH, variant.contentLength);
+        if (variant.contentEncoding != null) {
+            response.putHeader(HttpHeaders.CONTENT_ENCODING, variant.contentEncoding);
+        }
+
+        if (method == HttpMethod.HEAD) {
+            response.end();
+        } else {
+            response.end(variant.body);
+        }
+    }
+
+    private Future<Void> reload() {
+
+        var promise = Promise.<Void>promise();
+
+        vertx.<Map<String, Asset>>executeBlocking(p -> {
+
+            var files = new TreeMap<String, String>();
+            collect(vertx.fileSystem(), root, "", files);
+            fingerprint = fingerprint(vertx.fileSystem(), files);
+            p.complete(load(vertx.fileSystem(), files));
+        }, false, ar -> {
+
+            if (ar.failed()) {
+                LOG.error("Could not load static assets from " + root, ar.cause());
+                promise.fail(ar.cause());
+                return;
+            }
+
+            assets = ar.result();
+            LOG.info("Loaded " + assets.size() + " static assets from " + root);
+            promise.complete();
+        });
+
+        return promise.future();
+    }
+
+    private void reloadIfChanged() {
+
+        vertx.<Boolean>executeBlocking(p -> {
+
+            var files = new TreeMap<String, String>();
+            collect(vertx.fileSystem(), root, "", files);
+            p.complete(fingerprint(vertx.fileSystem(), files) != fingerprint);
+        }, false, ar -> {
+
+            if (ar.succeeded() && ar.result()) {
+                reload();
+            }
+        });
+    }
+
+    private static void collect(FileSystem fs, String dir, String prefix, Map<String, String> files) {
+
+        for (var entry : fs.readDirBlocking(dir)) {
+
+            var name = Paths.get(entry).getFileName().toString();
+            if (fs.propsBlocking(entry).isDirectory()) {
+                collect(fs, entry, prefix + name + "/", files);
+            } else {
+                files.put(prefix + name, entry);
+            }
+        }
+    }
+
+    private static long fingerprint(FileSystem fs, Map<String, String> files) {
+
+        var fingerprint = 1L;
+        for (var file : files.entrySet()) {
+            var props = fs.propsBlocking(file.getValue());
+            fingerprint = 31 * fingerprint + file.getKey().hashCode();
+            fingerprint = 31 * fingerprint + props.lastModifiedTime();
+            fingerprint = 31 * fingerprint + props.size();
+        }
+
+        return fingerprint;
+    }
+
+    private Map<String, Asset> load(FileSystem fs, Map<String, String> files) {
+
+        var loaded = new HashMap<String, Asset>();
+
+        for (var file : files.entrySet()) {
+
+            var name = file.getKey();
+            if (name.endsWith(BROTLI_SUFFIX) && files.containsKey(name.substring(0, name.length() - BROTLI_SUFFIX.length()))) {
+                // precompressed variant of another file
+                continue;
+            }
+
+            if (fs.propsBlocking(file.getValue()).size() > maxAssetSize) {
+                continue;
+            }
+
+            var content = fs.readFileBlocking(file.getValue()).getBytes();
+            var etag = etag(content);
+
+            var identity = new Variant(content, etag, null);
+
+            var gzipped = gzip(content);
+            var gzip = gzipped.length < content.length * 0.9 ? new Variant(gzipped, etag + "-gz", GZIP) : null;
+
+            var brotliFile = files.get(name + BROTLI_SUFFIX);
+            var brotli = brotliFile == null ? null : new Variant(fs.readFileBlocking(brotliFile).getBytes(), etag + "-br", BROTLI);
+
+            var contentType = MimeMapping.getMimeTypeForFilename(name);
+            if (contentType == null) {
+                contentType = "application/octet-stream";
+            } else if (contentType.startsWith("text/")) {
+                contentType += ";charset=utf-8";
+            }
+
+            loaded.put(name, new Asset(HttpHeaders.createOptimized(contentType), identity, gzip, brotli));
+        }
+
+        return Map.copyOf(loaded);
+    }
+
+    private static String etag(byte[] content) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) {
+
+        var bytes = new ByteArrayOutputStream(content.length / 2 + 32);
+        try (var out = new GZIPOutputStream(bytes) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static class Asset {
+
+        private final CharSequence contentType;
+
+        private final Variant identity;
+
+        private final Variant gzip;
+
+        private final Variant brotli;
+
+        Asset(CharSequence contentType, Variant identity, Variant gzip, Variant brotli) {
+            this.contentType = contentType;
+            this.identity = identity;
+            this.gzip = gzip;
+            this.brotli = brotli;
+        }
+
+        boolean hasVariants() {
+            return gzip != null || brotli != null;
+        }
+
+        Variant negotiate(String acceptEncoding) {
+
+            if (acceptEncoding == null || !hasVariants()) {
+                return identity;
+            }
+
+            // q-values of br, gzip, identity and *, -1 if not listed
+            var q = new float[]{-1, -1, -1, -1};
+            for (var token : acceptEncoding.split(",")) {
+
+                var parameters = token.indexOf(';');
+                var name = (parameters < 0 ? token : token.substring(0, parameters)).trim();
+                var index = name.equalsIgnoreCase("br") ? 0
+                        : name.equalsIgnoreCase("gzip") ? 1
+                        : name.equalsIgnoreCase("identity") ? 2
+                        : name.equals("*") ? 3
+                        : -1;
+                if (index >= 0) {
+                    q[index] = parameters < 0 ? 1 : quality(token.substring(parameters + 1));
+                }
+            }
+
+            // codings which are not listed are only acceptable via *, identity is the fallback either way
+            var any = Math.max(q[3], 0);
+            var brotliQ = brotli == null ? 0 : q[0] >= 0 ? q[0] : any;
+            var gzipQ = gzip == null ? 0 : q[1] >= 0 ? q[1] : any;
+            var identityQ = q[2] >= 0 ? q[2] : any;
+
+            if (brotliQ > 0 && brotliQ >= gzipQ && brotliQ >= identityQ) {
+                return brotli;
+            }
+
+            if (gzipQ > 0 && gzipQ >= identityQ) {
+                return gzip;
+            }
+
+            return identity;
+        }
+
+        /**
+         * @return the {@code q} parameter of an {@code Accept-Encoding} element, {@code 0} if it is invalid
+         */
+        private static float quality(String parameters) {
+
+            for (var parameter : parameters.split(";")) {
+
+                var equals = parameter.indexOf('=');
+                if (equals < 0 || !parameter.substring(0, equals).trim().equalsIgnoreCase("q")) {
+                    continue;
+                }
+
+                try {
+                    var q = Float.parseFloat(parameter.substring(equals + 1).trim());
+                    return q >= 0 && q <= 1 ? q : 0;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+
+            return 1;
+        }
+    }
+
+    private static class Variant {
+
+        private final Buffer body;
+
+        private final String etag;
+
+        private final CharSequence etagHeader;
+
+        private final CharSequence contentLength;
+
+        private final CharSequence contentEncoding;
+
+        Variant(byte[] content, String etag, CharSequence contentEncoding) {
+            this.body = Buffer.buffer(Unpooled.directBuffer(content.length, content.length).writeBytes(content));
+            this.etag = etag;
+            this.etagHeader = HttpHeaders.createOptimized('"' + etag + '"');
+            this.contentLength = HttpHeaders.createOptimized(String.valueOf(content.length));
+            this.contentEncoding = contentEncoding;
+        }
+
+        boolean matches(String ifNoneMatch) {
+
+            if (ifNoneMatch == null) {
+                return false;
+            }
+
+            for (var candidate : ifNoneMatch.split(",")) {
+
+                candidate = candidate.trim();
+                if (candidate.equals("*")) {
+                    return true;
+                }
+
+                // If-None-Match uses the weak comparison
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+
+                if (candidate.length() == etag.length() + 2 && candidate.regionMatches(1, etag, 0, etag.length())) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package demo;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.StaticHandler;
+
+/**
+ * The static file routes of this module, also served by the static file benchmark.
+ * <p>
+ * Files of up to {@code static.maxAssetSize} bytes are served from memory by the {@link StaticAssetCache}, larger files
+ * are streamed from disk by the {@link LargeFileHandler}, anything else falls through to {@link StaticHandler}.
+ */
+public final class StaticRoutes {
+
+    private StaticRoutes() {
+    }
+
+    /**
+     * Adds the routes serving the files below the given root, which has to be relative for {@link StaticHandler}.
+     *
+     * @return completes once the small files were loaded into memory
+     */
+    public static Future<Void> install(Vertx vertx, Router router, String root) {
+
+        // serve small static files from memory and stream large files from disk
+        var maxAssetSize = Long.getLong("static.maxAssetSize", 1024 * 1024);
+        var assets = StaticAssetCache.shared(vertx, root, maxAssetSize, Long.getLong("static.watchInterval", 0));
+        router.route().handler(assets);
+        router.route().handler(new LargeFileHandler(vertx, root,
+                Long.getLong("static.largeFileThreshold", maxAssetSize),
+                Integer.getInteger("static.maxOpenFiles", 64),
+                Long.getLong("static.largeFileCheckInterval", 1000)));
+        router.route().handler(StaticHandler.create(root));
+
+        return assets.ready();
+    }
+}